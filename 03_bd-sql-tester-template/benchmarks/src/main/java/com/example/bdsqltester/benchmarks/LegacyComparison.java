@@ -0,0 +1,53 @@
+package com.example.bdsqltester.benchmarks;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The comparison UserController used before the streaming comparator:
+ * both results turned into one String, then split, sorted and joined again.
+ * Kept here as the baseline the streaming comparator is measured against.
+ */
+final class LegacyComparison {
+
+    private LegacyComparison() {
+    }
+
+    static boolean resultsMatch(ResultSet expected, ResultSet actual) throws SQLException {
+        String expectedString = resultSetToString(expected);
+        String actualString = resultSetToString(actual);
+        return actualString.equals(expectedString) || sortLines(actualString).equals(sortLines(expectedString));
+    }
+
+    static String resultSetToString(ResultSet rs) throws SQLException {
+        StringBuilder sb = new StringBuilder();
+        ResultSetMetaData md = rs.getMetaData();
+        int colCount = md.getColumnCount();
+        boolean firstRow = true;
+        while (rs.next()) {
+            if (!firstRow) {
+                sb.append("\n");
+            }
+            for (int i = 1; i <= colCount; i++) {
+                sb.append(rs.getString(i));
+                if (i < colCount) {
+                    sb.append("\t");
+                }
+            }
+            firstRow = false;
+        }
+        return sb.toString().trim();
+    }
+
+    static String sortLines(String input) {
+        if (input == null || input.isEmpty()) {
+            return "";
+        }
+        List<String> lines = new ArrayList<>(List.of(input.split("\n")));
+        lines.sort(String::compareTo);
+        return String.join("\n", lines);
+    }
+}
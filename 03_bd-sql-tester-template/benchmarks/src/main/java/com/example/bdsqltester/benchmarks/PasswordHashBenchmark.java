@@ -0,0 +1,54 @@
+package com.example.bdsqltester.benchmarks;
+
+import com.example.bdsqltester.auth.PasswordHasher;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Cost of checking a password at different PBKDF2 iteration counts.
+ * {@code verify} is one login; {@code burst} is a whole class logging in at the start of a lab,
+ * all verified at once on this machine's cores (the worst case: one process checking everyone,
+ * like the lab-session simulator does). Pick the iteration count so a burst stays acceptable.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PasswordHashBenchmark {
+
+    @Param({"100000", "310000", "600000"})
+    public int iterations;
+
+    private String stored;
+
+    @State(Scope.Benchmark)
+    public static class LabClass {
+        @Param({"30", "60"})
+        public int classSize;
+    }
+
+    @Setup(Level.Trial)
+    public void hashPassword() {
+        stored = PasswordHasher.hash("correct horse battery staple", iterations);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public boolean verify() {
+        return PasswordHasher.verify("correct horse battery staple", stored);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2, batchSize = 1)
+    @Measurement(iterations = 5, batchSize = 1)
+    public long burst(LabClass lab) {
+        return IntStream.range(0, lab.classSize).parallel()
+                .filter(i -> PasswordHasher.verify("correct horse battery staple", stored))
+                .count();
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.bdsqltester.benchmarks;
+
+import com.example.bdsqltester.grading.ResultComparator;
+import com.example.bdsqltester.grading.ResultFingerprint;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of deciding whether a student's result matches the answer key.
+ * The expected result is always sorted; {@code order=unsorted} scrambles the student's rows,
+ * which forces the order-insensitive path. Run with {@code -prof gc} to see the allocation rate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ResultComparisonBenchmark {
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int rows;
+
+    @Param({"narrow", "wide"})
+    public String shape;
+
+    @Param({"sorted", "unsorted"})
+    public String order;
+
+    private ResultSet expected;
+    private ResultSet actual;
+
+    @Setup(Level.Invocation)
+    public void createResults() {
+        int columns = shape.equals("wide") ? 20 : 2;
+        expected = SyntheticResultSet.create(rows, columns, false);
+        actual = SyntheticResultSet.create(rows, columns, order.equals("unsorted"));
+    }
+
+    /** Reads every cell of both results and does nothing else; the floor for all other benchmarks. */
+    @Benchmark
+    public void scanOnly(Blackhole bh) throws SQLException {
+        int columns = expected.getMetaData().getColumnCount();
+        while (expected.next() & actual.next()) {
+            for (int i = 1; i <= columns; i++) {
+                bh.consume(expected.getString(i));
+                bh.consume(actual.getString(i));
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean legacyStringSort() throws SQLException {
+        return LegacyComparison.resultsMatch(expected, actual);
+    }
+
+    @Benchmark
+    public ResultComparator.Match streamingCompare() throws SQLException {
+        return ResultComparator.compare(expected, actual);
+    }
+
+    @Benchmark
+    public ResultFingerprint fingerprint() throws SQLException {
+        return ResultComparator.fingerprint(actual);
+    }
+}
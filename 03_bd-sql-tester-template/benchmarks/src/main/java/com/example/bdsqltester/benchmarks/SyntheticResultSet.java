@@ -0,0 +1,71 @@
+package com.example.bdsqltester.benchmarks;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Types;
+
+/**
+ * In-memory forward-only ResultSet for benchmarks.
+ * Cells are generated on the fly instead of stored, so a million wide rows do not have to fit in the heap;
+ * the first column is a bigint key, the others text; every getString allocates a new String,
+ * just like the real driver does.
+ */
+final class SyntheticResultSet {
+
+    private SyntheticResultSet() {
+    }
+
+    /**
+     * @param rows     number of rows
+     * @param columns  number of columns
+     * @param shuffled false: row i holds key i; true: the same keys in a scrambled order
+     */
+    static ResultSet create(int rows, int columns, boolean shuffled) {
+        ResultSetMetaData metaData = (ResultSetMetaData) Proxy.newProxyInstance(
+                SyntheticResultSet.class.getClassLoader(),
+                new Class<?>[]{ResultSetMetaData.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getColumnCount" -> columns;
+                    case "getColumnLabel", "getColumnName" -> "c" + args[0];
+                    case "getColumnType" -> (Integer) args[0] == 1 ? Types.BIGINT : Types.VARCHAR;
+                    case "getColumnTypeName" -> (Integer) args[0] == 1 ? "int8" : "text";
+                    default -> throw new SQLFeatureNotSupportedException(method.getName());
+                });
+
+        int[] cursor = {-1};
+        return (ResultSet) Proxy.newProxyInstance(
+                SyntheticResultSet.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "next" -> ++cursor[0] < rows;
+                    case "getMetaData" -> metaData;
+                    case "getString" -> cell(key(cursor[0], rows, shuffled), (Integer) args[0]);
+                    case "getLong" -> key(cursor[0], rows, shuffled);
+                    case "close" -> null;
+                    case "wasNull" -> false;
+                    default -> throw new SQLFeatureNotSupportedException(method.getName());
+                });
+    }
+
+    // (i * a) mod n with a coprime to n is a bijection, so a shuffled result holds exactly the same rows
+    private static long key(int row, int rows, boolean shuffled) {
+        if (!shuffled) {
+            return row;
+        }
+        long multiplier = 1_000_003L;
+        while (gcd(multiplier, rows) != 1) {
+            multiplier += 2;
+        }
+        return (row * multiplier) % rows;
+    }
+
+    private static long gcd(long a, long b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+
+    private static String cell(long key, int column) {
+        return column == 1 ? Long.toString(key) : "value-" + key + "-" + column;
+    }
+}
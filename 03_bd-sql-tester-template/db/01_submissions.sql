@@ -0,0 +1,12 @@
+-- Submission history: every submitted query is kept so it can be re-graded later.
+-- grade is NULL when the submission could not be graded (e.g. the answer key was broken).
+CREATE TABLE IF NOT EXISTS submissions (
+    id            BIGSERIAL PRIMARY KEY,
+    assignment_id BIGINT      NOT NULL REFERENCES assignments (id),
+    user_id       BIGINT      NOT NULL REFERENCES users (id),
+    query_text    TEXT        NOT NULL,
+    grade         INTEGER,
+    submitted_at  TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+CREATE INDEX IF NOT EXISTS submissions_assignment_id_idx ON submissions (assignment_id);
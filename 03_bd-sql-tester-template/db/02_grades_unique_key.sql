@@ -0,0 +1,10 @@
+-- One grade row per student and assignment, required by the grade upsert (INSERT ... ON CONFLICT).
+-- Older clients could insert duplicates when a student submitted twice at once; keep the best of them.
+DELETE FROM grades g
+    USING grades d
+WHERE g.assignment_id = d.assignment_id
+  AND g.user_id = d.user_id
+  AND (g.grade < d.grade OR (g.grade = d.grade AND g.ctid > d.ctid));
+
+ALTER TABLE grades
+    ADD CONSTRAINT grades_assignment_id_user_id_key UNIQUE (assignment_id, user_id);
@@ -0,0 +1,12 @@
+-- Template for the throw-away databases DML assignments are graded in (see SandboxPool).
+-- Cloning requires that nobody is connected to the source, so run this from another database
+-- (e.g. postgres) while no client is running. Drop and re-create it after changing the dataset; clients tell
+-- the new template by the dataset version it copies from "sql-tester" (db/07) and recompute the answer keys' tables.
+-- The sandboxes themselves (sandbox_<epoch seconds>_<client>_<n>) need no upkeep: clients drop them after use,
+-- and drop the ones a crashed client left behind when they start. To clear them all by hand while no client runs:
+--   SELECT format('DROP DATABASE %I;', datname) FROM pg_database WHERE datname LIKE 'sandbox\_%' \gexec
+CREATE DATABASE "sql-tester-template" TEMPLATE "sql-tester";
+
+-- Keep it free of connections, otherwise cloning a sandbox fails
+ALTER DATABASE "sql-tester-template" ALLOW_CONNECTIONS false;
+ALTER DATABASE "sql-tester-template" IS_TEMPLATE true;
@@ -0,0 +1,14 @@
+-- Change feed for the assignment lists: every client LISTENs on assignment_changes (see ChangeFeed).
+-- The payload is "<INSERT|UPDATE|DELETE>:<id>"; clients fetch the changed row themselves, since a
+-- NOTIFY payload is limited to 8000 bytes and answer keys can be longer.
+CREATE OR REPLACE FUNCTION notify_assignment_change() RETURNS trigger AS $$
+BEGIN
+    PERFORM pg_notify('assignment_changes', TG_OP || ':' || COALESCE(NEW.id, OLD.id));
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS assignments_notify ON assignments;
+CREATE TRIGGER assignments_notify
+    AFTER INSERT OR UPDATE OR DELETE ON assignments
+    FOR EACH ROW EXECUTE FUNCTION notify_assignment_change();
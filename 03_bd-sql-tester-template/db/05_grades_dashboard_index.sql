@@ -0,0 +1,3 @@
+-- Keyset pages of the grades dashboard sorted by grade (see GradesDashboard) read straight from this index.
+-- Sorting by username uses the unique (assignment_id, user_id) key and the users primary key.
+CREATE INDEX IF NOT EXISTS grades_assignment_id_grade_user_id_idx ON grades (assignment_id, grade, user_id);
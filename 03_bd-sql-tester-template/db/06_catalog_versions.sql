@@ -0,0 +1,24 @@
+-- Version of the assignment catalog (id and name of every assignment), so clients can tell whether
+-- their on-disk snapshot of the list is still current with one tiny query (see AssignmentSnapshot).
+-- The first version is taken from the clock, so a recreated database never repeats an old version.
+CREATE TABLE IF NOT EXISTS catalog_versions (
+    name    TEXT PRIMARY KEY,
+    version BIGINT NOT NULL
+);
+
+INSERT INTO catalog_versions (name, version)
+VALUES ('assignments', (extract(epoch FROM clock_timestamp()) * 1000000)::bigint)
+ON CONFLICT (name) DO NOTHING;
+
+CREATE OR REPLACE FUNCTION bump_assignments_version() RETURNS trigger AS $$
+BEGIN
+    UPDATE catalog_versions SET version = version + 1 WHERE name = 'assignments';
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Once per statement: a bulk import bumps the version once, not once per row
+DROP TRIGGER IF EXISTS assignments_version ON assignments;
+CREATE TRIGGER assignments_version
+    AFTER INSERT OR DELETE OR UPDATE OF name OR TRUNCATE ON assignments
+    FOR EACH STATEMENT EXECUTE FUNCTION bump_assignments_version();
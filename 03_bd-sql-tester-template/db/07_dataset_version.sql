@@ -0,0 +1,70 @@
+-- Version of the grading dataset (every table in public except the application's own), so a client can remember
+-- the result of an answer key per version (see AnswerKeyMemo). Any change to the rows or the tables bumps it.
+-- Run it on every grading database: clients read the version there, in the same transaction as the queries.
+-- Event triggers need a superuser; run this as postgres.
+INSERT INTO catalog_versions (name, version)
+VALUES ('dataset', (extract(epoch FROM clock_timestamp()) * 1000000)::bigint)
+ON CONFLICT (name) DO NOTHING;
+
+CREATE OR REPLACE FUNCTION bump_dataset_version() RETURNS trigger AS $$
+BEGIN
+    UPDATE catalog_versions SET version = version + 1 WHERE name = 'dataset';
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Answer keys never depend on these (an answer key reading a table without the trigger is not remembered),
+-- and they change all the time
+CREATE OR REPLACE FUNCTION is_dataset_table(tbl regclass) RETURNS boolean AS $$
+    SELECT n.nspname = 'public'
+       AND c.relkind IN ('r', 'p')
+       AND c.relname NOT IN ('users', 'assignments', 'submissions', 'grades', 'catalog_versions', 'graded_results')
+    FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace
+    WHERE c.oid = tbl;
+$$ LANGUAGE sql STABLE;
+
+-- Once per statement, so a bulk load bumps the version once
+CREATE OR REPLACE FUNCTION track_dataset_table(tbl regclass) RETURNS void AS $$
+BEGIN
+    IF is_dataset_table(tbl) THEN
+        EXECUTE format('DROP TRIGGER IF EXISTS dataset_version ON %s', tbl);
+        EXECUTE format('CREATE TRIGGER dataset_version AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON %s '
+                       'FOR EACH STATEMENT EXECUTE FUNCTION bump_dataset_version()', tbl);
+    END IF;
+END;
+$$ LANGUAGE plpgsql;
+
+SELECT track_dataset_table(c.oid)
+FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace
+WHERE n.nspname = 'public' AND c.relkind IN ('r', 'p');
+
+-- New tables get the trigger too, and changing or dropping a table changes the dataset as well
+CREATE OR REPLACE FUNCTION dataset_ddl() RETURNS event_trigger AS $$
+DECLARE
+    command record;
+    changed boolean := false;
+BEGIN
+    FOR command IN SELECT * FROM pg_event_trigger_ddl_commands() WHERE schema_name = 'public' LOOP
+        changed := true;
+        IF command.command_tag IN ('CREATE TABLE', 'CREATE TABLE AS', 'SELECT INTO') THEN
+            PERFORM track_dataset_table(command.objid::regclass);
+        END IF;
+    END LOOP;
+    IF changed THEN
+        UPDATE catalog_versions SET version = version + 1 WHERE name = 'dataset';
+    END IF;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION dataset_drop() RETURNS event_trigger AS $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM pg_event_trigger_dropped_objects() WHERE schema_name = 'public') THEN
+        UPDATE catalog_versions SET version = version + 1 WHERE name = 'dataset';
+    END IF;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP EVENT TRIGGER IF EXISTS dataset_ddl;
+CREATE EVENT TRIGGER dataset_ddl ON ddl_command_end EXECUTE FUNCTION dataset_ddl();
+DROP EVENT TRIGGER IF EXISTS dataset_drop;
+CREATE EVENT TRIGGER dataset_drop ON sql_drop EXECUTE FUNCTION dataset_drop();
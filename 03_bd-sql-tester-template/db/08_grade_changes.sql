@@ -0,0 +1,27 @@
+-- Change feed for the admin grades view: open dashboards LISTEN on grade_changes (see GradesDashboard).
+-- The payload carries everything the view needs, so applying a change costs no query:
+-- "<INSERT|UPDATE|DELETE>:<transaction id>:<assignment_id>:<user_id>:<old grade>:<new grade>:<username>",
+-- where a missing grade is empty and the username comes last because it may contain ':'.
+-- The transaction id lets a view skip changes its initial load already saw.
+CREATE OR REPLACE FUNCTION notify_grade_change() RETURNS trigger AS $$
+DECLARE
+    -- Grades are never moved between students or assignments, so an update keeps both
+    assignment INTEGER := COALESCE(NEW.assignment_id, OLD.assignment_id);
+    student INTEGER := COALESCE(NEW.user_id, OLD.user_id);
+BEGIN
+    -- The grade upsert keeps the best grade, so most resubmissions change nothing
+    IF TG_OP = 'UPDATE' AND OLD.grade IS NOT DISTINCT FROM NEW.grade THEN
+        RETURN NULL;
+    END IF;
+    PERFORM pg_notify('grade_changes', concat_ws(':', TG_OP, pg_current_xact_id(), assignment, student,
+            CASE WHEN TG_OP = 'INSERT' THEN '' ELSE COALESCE(OLD.grade::text, '') END,
+            CASE WHEN TG_OP = 'DELETE' THEN '' ELSE COALESCE(NEW.grade::text, '') END,
+            COALESCE((SELECT username FROM users WHERE id = student), '')));
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS grades_notify ON grades;
+CREATE TRIGGER grades_notify
+    AFTER INSERT OR UPDATE OR DELETE ON grades
+    FOR EACH ROW EXECUTE FUNCTION notify_grade_change();
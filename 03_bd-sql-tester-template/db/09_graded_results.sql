@@ -0,0 +1,22 @@
+-- Verdicts of graded queries, shared by every client (see GradedResultCache): a query submitted again, by anyone,
+-- on the same dataset version and against the same answer key is scored without running it.
+-- Hashes are SHA-256 of the canonical student query and of the answer key text.
+CREATE TABLE IF NOT EXISTS graded_results (
+    assignment_id   BIGINT      NOT NULL REFERENCES assignments (id) ON DELETE CASCADE,
+    query_hash      BYTEA       NOT NULL,
+    dataset_version BIGINT      NOT NULL,
+    answer_key_hash BYTEA       NOT NULL,
+    same_result     BOOLEAN     NOT NULL,
+    -- A wrong result graded without feedback is not reused where feedback is wanted
+    with_feedback   BOOLEAN     NOT NULL,
+    feedback        TEXT,
+    used_at         TIMESTAMPTZ NOT NULL DEFAULT now(),
+    PRIMARY KEY (assignment_id, query_hash, dataset_version)
+);
+
+-- Eviction drops the least recently used entries
+CREATE INDEX IF NOT EXISTS graded_results_used_at_idx ON graded_results (used_at);
+
+-- Not part of the dataset (see is_dataset_table in db/07); a database migrated before it knew that table
+-- gave it the trigger on creation, and every entry would then bump the version it is keyed by
+DROP TRIGGER IF EXISTS dataset_version ON graded_results;
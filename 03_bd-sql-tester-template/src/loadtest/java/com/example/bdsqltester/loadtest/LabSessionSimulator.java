@@ -0,0 +1,384 @@
+package com.example.bdsqltester.loadtest;
+
+import com.example.bdsqltester.auth.Authenticator;
+import com.example.bdsqltester.auth.PasswordHasher;
+import com.example.bdsqltester.auth.Session;
+import com.example.bdsqltester.datasources.GradingDataSource;
+import com.example.bdsqltester.datasources.MainDataSource;
+import com.example.bdsqltester.dtos.Assignment;
+import com.example.bdsqltester.dtos.AssignmentCache;
+import com.example.bdsqltester.grading.ExecutionLimits;
+import com.example.bdsqltester.grading.GradingExecutor;
+import com.example.bdsqltester.grading.GradingResult;
+import com.example.bdsqltester.grading.Submission;
+import com.example.bdsqltester.metrics.Metrics;
+import com.example.bdsqltester.scenes.AssignmentListSync;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Headless load test: N virtual students log in, load the assignments, test and submit queries,
+ * going through the same SQL and grading pipeline as LoginController and UserController.
+ * Prints latency percentiles per step and how saturated the connection pools were.
+ * <p>
+ * In a lab every student runs their own client, with its own pools, admission queue and caches, so every virtual
+ * student gets a JVM of its own ({@code --client-jvm} sets its options). This process starts them over the
+ * ramp-up, reads back what each one measured and merges it into one report. Only the database server is shared.
+ * The clients do share this machine's cores, so client-side work such as password hashing is slower than on
+ * a lab's separate machines; for large runs, start a share of the students on each of several machines
+ * (with distinct {@code --username-prefix}es).
+ *
+ * <pre>mvn -Ploadtest compile exec:exec -Dloadtest.args="--users=50 --think-ms=2000 --submissions=3"</pre>
+ *
+ * Virtual students log in as {@code <username-prefix>1..N}; pass {@code --create-users} to insert missing accounts.
+ */
+public class LabSessionSimulator {
+
+    private final LoadTestOptions options;
+    private final LatencyRecorder login = new LatencyRecorder("login");
+    private final LatencyRecorder load = new LatencyRecorder("load");
+    private final LatencyRecorder test = new LatencyRecorder("test");
+    private final LatencyRecorder submit = new LatencyRecorder("submit");
+    private final AtomicIntegerArray outcomes = new AtomicIntegerArray(GradingResult.Outcome.values().length);
+    private final Map<String, PoolSaturation> saturation = new TreeMap<>();
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile boolean running = true;
+
+    LabSessionSimulator(LoadTestOptions options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        if (options.client > 0) {
+            new LabSessionSimulator(options).runClient();
+        } else {
+            new LabSessionSimulator(options).run(args);
+        }
+        System.exit(0); // The pools keep non-daemon threads alive
+    }
+
+    // Starts one client process per student, each with the same arguments plus its student number
+    void run(String[] args) throws Exception {
+        if (options.createUsers) {
+            createUsers();
+        }
+
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        long start = System.nanoTime();
+        List<Thread> readers = new ArrayList<>();
+        List<Process> clients = new ArrayList<>();
+        for (int i = 1; i <= options.users; i++) {
+            long delay = options.users > 1 ? options.rampUpMs * (i - 1) / (options.users - 1) : 0;
+            Thread.sleep(Math.max(0, delay - (System.nanoTime() - start) / 1_000_000));
+
+            List<String> command = new ArrayList<>();
+            command.add(java);
+            command.addAll(Arrays.asList(options.clientJvmOptions.trim().split("\\s+")));
+            command.addAll(List.of("-cp", System.getProperty("java.class.path"), LabSessionSimulator.class.getName()));
+            command.addAll(Arrays.asList(args));
+            command.add("--client=" + i);
+            Process client = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+            clients.add(client);
+            readers.add(Thread.ofVirtual().name("client-" + i).start(() -> readClient(client)));
+        }
+        for (int i = 0; i < clients.size(); i++) {
+            readers.get(i).join();
+            clients.get(i).waitFor();
+        }
+        printReport((System.nanoTime() - start) / 1e9);
+    }
+
+    // Plays one student in this process and writes what it measured to stdout, one line per sample
+    void runClient() throws InterruptedException {
+        Thread sampler = Thread.ofPlatform().daemon().name("pool-sampler").start(this::samplePools);
+        runStudent(options.usernamePrefix + options.client, 0);
+        running = false;
+        sampler.join();
+
+        for (LatencyRecorder recorder : List.of(login, load, test, submit)) {
+            recorder.writeTo(System.out);
+        }
+        for (GradingResult.Outcome outcome : GradingResult.Outcome.values()) {
+            for (int i = 0; i < outcomes.get(outcome.ordinal()); i++) {
+                System.out.println("outcome " + outcome);
+            }
+        }
+        System.out.println("rejected " + GradingExecutor.getAdmission().getRejected());
+        synchronized (saturation) {
+            saturation.forEach((name, s) -> System.out.println("pool " + name + " " + s.write()));
+        }
+        System.out.flush();
+    }
+
+    private void readClient(Process client) {
+        Map<String, LatencyRecorder> recorders = Map.of("login", login, "load", load, "test", test, "submit", submit);
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] f = line.split(" ");
+                switch (f[0]) {
+                    case "sample" -> recorders.get(f[1]).record(Long.parseLong(f[2]));
+                    case "error" -> recorders.get(f[1]).recordError();
+                    case "outcome" -> outcomes.incrementAndGet(GradingResult.Outcome.valueOf(f[1]).ordinal());
+                    case "rejected" -> rejected.addAndGet(Long.parseLong(f[1]));
+                    case "pool" -> {
+                        synchronized (saturation) {
+                            saturation.computeIfAbsent(f[1], k -> new PoolSaturation()).merge(f);
+                        }
+                    }
+                    default -> System.out.println(line); // Anything else the client printed
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("client: " + e.getMessage());
+        }
+    }
+
+    private void runStudent(String username, long startDelayMs) {
+        try {
+            Thread.sleep(startDelayMs);
+
+            long t = System.nanoTime();
+            long userId;
+            try {
+                userId = login(username);
+                login.record(System.nanoTime() - t);
+            } catch (SQLException e) {
+                userId = -1;
+                System.err.println(username + ": " + e.getMessage());
+            }
+            if (userId < 0) {
+                login.recordError();
+                return;
+            }
+            long student = userId;
+
+            t = System.nanoTime();
+            List<Assignment> assignments;
+            try {
+                assignments = loadAssignments();
+                load.record(System.nanoTime() - t);
+            } catch (SQLException e) {
+                load.recordError();
+                System.err.println(username + ": " + e.getMessage());
+                return;
+            }
+            if (assignments.isEmpty()) {
+                return;
+            }
+
+            for (int i = 0; i < options.submissionsPerUser; i++) {
+                // Opening an assignment loads its details, like UserController.onAssignmentSelected
+                Assignment assignment;
+                try {
+                    assignment = AssignmentCache.get(assignments.get(ThreadLocalRandom.current().nextInt(assignments.size())).id);
+                } catch (SQLException e) {
+                    load.recordError();
+                    System.err.println(username + ": " + e.getMessage());
+                    continue;
+                }
+                if (assignment == null || assignment.answerKey == null || assignment.answerKey.isBlank()) {
+                    continue;
+                }
+                String query = pickQuery(assignment.answerKey);
+
+                think();
+                t = System.nanoTime();
+                try {
+                    // Waits for its turn in the student's lane, like the Test button
+                    GradingExecutor.supplyForUser(student, () -> {
+                        testQuery(query);
+                        return null;
+                    }).join();
+                    test.record(System.nanoTime() - t);
+                } catch (CompletionException e) {
+                    test.record(System.nanoTime() - t);
+                    test.recordError(); // Expected for the "error" and "heavy" queries
+                }
+
+                think();
+                t = System.nanoTime();
+                try {
+                    GradingResult result = GradingExecutor.submit(
+                            new Submission(assignment.id, student, query, assignment.answerKey), state -> {
+                            }).join();
+                    submit.record(System.nanoTime() - t);
+                    outcomes.incrementAndGet(result.outcome.ordinal());
+                } catch (RuntimeException e) {
+                    submit.record(System.nanoTime() - t);
+                    submit.recordError();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Same path as LoginController: one query, then the password hash check
+    private long login(String username) throws SQLException {
+        Session session = Authenticator.login(username, options.password, "user");
+        return session != null ? session.userId : -1;
+    }
+
+    // Same statement as UserController.loadAssignments
+    private List<Assignment> loadAssignments() throws SQLException {
+        return AssignmentListSync.loadAll();
+    }
+
+    // What the Test button does: run the query in the sandbox and read the first page of rows
+    private void testQuery(String query) throws SQLException {
+        ExecutionLimits limits = ExecutionLimits.forStudents();
+        try (Connection conn = GradingDataSource.getConnection()) {
+            limits.apply(conn);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.setFetchSize(200);
+                try (ResultSet rs = stmt.executeQuery(query)) {
+                    int columns = rs.getMetaData().getColumnCount();
+                    for (int row = 0; row < 200 && rs.next(); row++) {
+                        for (int i = 1; i <= columns; i++) {
+                            rs.getString(i);
+                        }
+                    }
+                }
+            } finally {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    private String pickQuery(String answerKey) {
+        String key = answerKey.trim();
+        if (key.endsWith(";")) {
+            key = key.substring(0, key.length() - 1);
+        }
+        double total = options.correctWeight + options.wrongWeight + options.errorWeight + options.heavyWeight;
+        double r = ThreadLocalRandom.current().nextDouble() * total;
+        if ((r -= options.correctWeight) < 0) {
+            return key;
+        }
+        if ((r -= options.wrongWeight) < 0) {
+            return "SELECT 1";
+        }
+        if ((r -= options.errorWeight) < 0) {
+            return "SELECT * FROM table_that_does_not_exist";
+        }
+        // A cartesian product, the classic accidental expensive query
+        return "SELECT * FROM (" + key + ") a CROSS JOIN (" + key + ") b CROSS JOIN generate_series(1, 1000) g";
+    }
+
+    private void think() throws InterruptedException {
+        // Uniform between 0.5x and 1.5x the configured think time
+        long thinkMs = (long) (options.thinkTimeMs * (0.5 + ThreadLocalRandom.current().nextDouble()));
+        Thread.sleep(thinkMs);
+    }
+
+    private void createUsers() throws SQLException {
+        String sql = "INSERT INTO users (username, password, role) SELECT ?, ?, 'user' " +
+                "WHERE NOT EXISTS (SELECT 1 FROM users WHERE username = ?)";
+        try (Connection c = MainDataSource.getConnection();
+             PreparedStatement stmt = c.prepareStatement(sql)) {
+            for (int i = 1; i <= options.users; i++) {
+                String username = options.usernamePrefix + i;
+                stmt.setString(1, username);
+                stmt.setString(2, PasswordHasher.hash(options.password));
+                stmt.setString(3, username);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    private void samplePools() {
+        while (running) {
+            for (Map.Entry<String, PoolStats> pool : Metrics.getPools().entrySet()) {
+                PoolStats stats = pool.getValue();
+                synchronized (saturation) {
+                    saturation.computeIfAbsent(pool.getKey(), k -> new PoolSaturation()).sample(stats);
+                }
+            }
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void printReport(double seconds) {
+        System.out.println();
+        System.out.printf("Lab session: %d students, one client process each, %d submissions each, %.1f s%n",
+                options.users, options.submissionsPerUser, seconds);
+        System.out.println(login.report());
+        System.out.println(load.report());
+        System.out.println(test.report());
+        System.out.println(submit.report());
+
+        System.out.println();
+        System.out.println("Grading outcomes:");
+        for (GradingResult.Outcome outcome : GradingResult.Outcome.values()) {
+            if (outcomes.get(outcome.ordinal()) > 0) {
+                System.out.printf("  %-16s %d%n", outcome, outcomes.get(outcome.ordinal()));
+            }
+        }
+        System.out.printf("Rejected by admission control: %d%n", rejected.get());
+
+        System.out.println();
+        System.out.println("Pool saturation per client (sampled every 100 ms; maxima of the busiest client):");
+        synchronized (saturation) {
+            saturation.forEach((name, s) -> System.out.println("  " + s.report(name)));
+        }
+    }
+
+    private static class PoolSaturation {
+        int samples;
+        int saturatedSamples; // Every connection in use
+        int maxActive;
+        int maxPending;
+        int maxConnections;
+
+        void sample(PoolStats stats) {
+            samples++;
+            maxConnections = stats.getMaxConnections();
+            maxActive = Math.max(maxActive, stats.getActiveConnections());
+            maxPending = Math.max(maxPending, stats.getPendingThreads());
+            if (stats.getActiveConnections() >= maxConnections) {
+                saturatedSamples++;
+            }
+        }
+
+        // The fields after "pool <name>" of a client's line
+        String write() {
+            return samples + " " + saturatedSamples + " " + maxActive + " " + maxPending + " " + maxConnections;
+        }
+
+        void merge(String[] line) {
+            samples += Integer.parseInt(line[2]);
+            saturatedSamples += Integer.parseInt(line[3]);
+            maxActive = Math.max(maxActive, Integer.parseInt(line[4]));
+            maxPending = Math.max(maxPending, Integer.parseInt(line[5]));
+            maxConnections = Math.max(maxConnections, Integer.parseInt(line[6]));
+        }
+
+        String report(String name) {
+            return String.format("%-12s max active=%d/%d  max waiting threads=%d  saturated %.0f%% of the time",
+                    name, maxActive, maxConnections, maxPending, samples == 0 ? 0 : 100.0 * saturatedSamples / samples);
+        }
+    }
+}
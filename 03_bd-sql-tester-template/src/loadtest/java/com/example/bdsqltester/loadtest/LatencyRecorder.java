@@ -0,0 +1,56 @@
+package com.example.bdsqltester.loadtest;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Keeps every sample so the report can show exact percentiles.
+ * A lab session produces a few thousand samples at most, so this stays small.
+ */
+class LatencyRecorder {
+    private final String name;
+    private long[] samples = new long[1024];
+    private int size;
+    private int errors;
+
+    LatencyRecorder(String name) {
+        this.name = name;
+    }
+
+    synchronized void record(long nanos) {
+        if (size == samples.length) {
+            samples = Arrays.copyOf(samples, size * 2);
+        }
+        samples[size++] = nanos;
+    }
+
+    synchronized void recordError() {
+        errors++;
+    }
+
+    /** One line per sample and error, for {@link LabSessionSimulator} to read back from a client process. */
+    synchronized void writeTo(PrintStream out) {
+        for (int i = 0; i < size; i++) {
+            out.println("sample " + name + " " + samples[i]);
+        }
+        for (int i = 0; i < errors; i++) {
+            out.println("error " + name);
+        }
+    }
+
+    synchronized String report() {
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        return String.format("%-8s n=%-6d errors=%-4d p50=%8.1f ms  p95=%8.1f ms  p99=%8.1f ms  max=%8.1f ms",
+                name, size, errors, percentile(sorted, 0.50), percentile(sorted, 0.95), percentile(sorted, 0.99),
+                size == 0 ? 0 : sorted[size - 1] / 1e6);
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}
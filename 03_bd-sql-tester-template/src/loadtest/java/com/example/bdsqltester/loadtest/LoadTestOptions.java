@@ -0,0 +1,64 @@
+package com.example.bdsqltester.loadtest;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Command line options of {@link LabSessionSimulator}, given as {@code --name=value}.
+ */
+class LoadTestOptions {
+    int users = 50;
+    String usernamePrefix = "student";
+    String password = "password";
+    boolean createUsers = false;
+    int submissionsPerUser = 3;
+    long thinkTimeMs = 2_000;
+    long rampUpMs = 10_000;
+    // Relative weights of the kinds of queries the virtual students submit
+    double correctWeight = 0.5;
+    double wrongWeight = 0.3;
+    double errorWeight = 0.1;
+    double heavyWeight = 0.1;
+    // Options of the JVM every virtual student's client runs in
+    String clientJvmOptions = "-Xmx256m -XX:+UseSerialGC";
+    // Set in the client processes only: the number of the student the process plays
+    int client = 0;
+
+    static LoadTestOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            values.put(eq < 0 ? arg.substring(2) : arg.substring(2, eq), eq < 0 ? "true" : arg.substring(eq + 1));
+        }
+
+        LoadTestOptions options = new LoadTestOptions();
+        options.users = Integer.parseInt(values.getOrDefault("users", String.valueOf(options.users)));
+        options.usernamePrefix = values.getOrDefault("username-prefix", options.usernamePrefix);
+        options.password = values.getOrDefault("password", options.password);
+        options.createUsers = Boolean.parseBoolean(values.getOrDefault("create-users", "false"));
+        options.submissionsPerUser = Integer.parseInt(values.getOrDefault("submissions", String.valueOf(options.submissionsPerUser)));
+        options.thinkTimeMs = Long.parseLong(values.getOrDefault("think-ms", String.valueOf(options.thinkTimeMs)));
+        options.rampUpMs = Long.parseLong(values.getOrDefault("ramp-up-ms", String.valueOf(options.rampUpMs)));
+        options.clientJvmOptions = values.getOrDefault("client-jvm", options.clientJvmOptions);
+        options.client = Integer.parseInt(values.getOrDefault("client", "0"));
+        if (values.containsKey("mix")) {
+            // e.g. --mix=correct:5,wrong:3,error:1,heavy:1
+            options.correctWeight = options.wrongWeight = options.errorWeight = options.heavyWeight = 0;
+            for (String part : values.get("mix").split(",")) {
+                String[] kv = part.split(":");
+                double weight = Double.parseDouble(kv[1]);
+                switch (kv[0]) {
+                    case "correct" -> options.correctWeight = weight;
+                    case "wrong" -> options.wrongWeight = weight;
+                    case "error" -> options.errorWeight = weight;
+                    case "heavy" -> options.heavyWeight = weight;
+                    default -> throw new IllegalArgumentException("Unknown query kind in --mix: " + kv[0]);
+                }
+            }
+        }
+        return options;
+    }
+}
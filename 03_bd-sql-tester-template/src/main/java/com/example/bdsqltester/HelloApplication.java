@@ -1,5 +1,11 @@
 package com.example.bdsqltester;
 
+import com.example.bdsqltester.datasources.GradingDataSource;
+import com.example.bdsqltester.datasources.MainDataSource;
+import com.example.bdsqltester.datasources.SandboxPool;
+import com.example.bdsqltester.metrics.MetricsServer;
+import com.example.bdsqltester.metrics.StartupTimings;
+import com.example.bdsqltester.scenes.ScenePreloader;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
@@ -20,7 +26,11 @@ HelloApplication extends Application {
 
     @Override
     public void start(Stage stage) throws IOException {
+        StartupTimings.mark("javafx started");
         HelloApplication.applicationInstance = this;
+        // Connecting takes a while; do it while the login screen is built and filled in
+        MainDataSource.warmUp();
+        MetricsServer.start();
 
         FXMLLoader fxmlLoader = new FXMLLoader(HelloApplication.class.getResource("login-view.fxml"));
         Scene scene = new Scene(fxmlLoader.load());
@@ -28,10 +38,28 @@ HelloApplication extends Application {
 
         stage.setTitle("Hello!");
         stage.setScene(scene);
+        scene.addPostLayoutPulseListener(new Runnable() {
+            @Override
+            public void run() {
+                scene.removePostLayoutPulseListener(this);
+                StartupTimings.mark("first frame");
+                // Only now, so they don't compete with the login screen for the JavaFX thread and the CPU
+                GradingDataSource.warmUp();
+                SandboxPool.reclaimOrphans();
+                ScenePreloader.preload("user-view.fxml", "admin-view.fxml");
+            }
+        });
         stage.show();
     }
 
+    @Override
+    public void stop() {
+        MetricsServer.stop();
+        SandboxPool.shutdown(); // Don't leave unused sandbox databases behind on the server
+    }
+
     public static void main(String[] args) {
+        StartupTimings.mark("main");
         launch();
     }
 }
\ No newline at end of file
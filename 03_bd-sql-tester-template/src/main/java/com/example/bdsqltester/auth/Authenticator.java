@@ -0,0 +1,62 @@
+package com.example.bdsqltester.auth;
+
+import com.example.bdsqltester.datasources.MainDataSource;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Checks credentials with one query, which also returns everything the views need about the user.
+ * Passwords still stored in plain text (or hashed with fewer iterations) are re-hashed on the next successful login.
+ */
+public class Authenticator {
+
+    // Verified against when the user doesn't exist, so the response time doesn't reveal which usernames exist
+    private static final String UNKNOWN_USER_HASH = PasswordHasher.hash("unknown-user");
+
+    private Authenticator() {
+    }
+
+    /** Returns the signed-in user, or null if the username, password or role is wrong. */
+    public static Session login(String username, String password, String role) throws SQLException {
+        try (Connection c = MainDataSource.getConnection();
+             PreparedStatement stmt = c.prepareStatement("SELECT id, role, password FROM users WHERE username = ? AND role = ?")) {
+            stmt.setString(1, username);
+            stmt.setString(2, role.toLowerCase());
+
+            int userId;
+            String storedPassword;
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    PasswordHasher.verify(password, UNKNOWN_USER_HASH);
+                    return null;
+                }
+                userId = rs.getInt("id");
+                role = rs.getString("role");
+                storedPassword = rs.getString("password");
+            }
+            if (!PasswordHasher.verify(password, storedPassword)) {
+                return null;
+            }
+            if (PasswordHasher.needsRehash(storedPassword)) {
+                upgradePassword(c, userId, storedPassword, password);
+            }
+
+            return new Session(userId, username, role);
+        }
+    }
+
+    // Only replaces the password if nobody changed it in the meantime; a failure just means trying again next login
+    private static void upgradePassword(Connection c, int userId, String oldValue, String password) {
+        try (PreparedStatement stmt = c.prepareStatement("UPDATE users SET password = ? WHERE id = ? AND password = ?")) {
+            stmt.setString(1, PasswordHasher.hash(password));
+            stmt.setInt(2, userId);
+            stmt.setString(3, oldValue);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.bdsqltester.auth;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Salted PBKDF2 password hashes, stored as {@code pbkdf2-sha256$<iterations>$<salt>$<hash>} (Base64).
+ * The iteration count can be changed with {@code -Dauth.pbkdf2Iterations}; hashes made with fewer
+ * iterations, and passwords still stored in plain text, are reported by {@link #needsRehash(String)}.
+ */
+public class PasswordHasher {
+
+    private static final String PREFIX = "pbkdf2-sha256$";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    public static final int ITERATIONS = Integer.getInteger("auth.pbkdf2Iterations", 310_000);
+
+    private static final SecureRandom random = new SecureRandom();
+
+    private PasswordHasher() {
+    }
+
+    public static String hash(String password) {
+        return hash(password, ITERATIONS);
+    }
+
+    public static String hash(String password, int iterations) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        Base64.Encoder base64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + iterations + "$" + base64.encodeToString(salt) + "$"
+                + base64.encodeToString(pbkdf2(password, salt, iterations));
+    }
+
+    /** Checks a password against a stored hash, or against a legacy plain text password; false for a malformed hash. */
+    public static boolean verify(String password, String stored) {
+        if (stored == null) {
+            return false;
+        }
+        if (!stored.startsWith(PREFIX)) {
+            // Legacy row from before passwords were hashed
+            return MessageDigest.isEqual(stored.getBytes(StandardCharsets.UTF_8), password.getBytes(StandardCharsets.UTF_8));
+        }
+        String[] parts = stored.substring(PREFIX.length()).split("\\$");
+        if (parts.length != 3) {
+            return false;
+        }
+        Base64.Decoder base64 = Base64.getDecoder();
+        try {
+            byte[] expected = base64.decode(parts[2]);
+            byte[] actual = pbkdf2(password, base64.decode(parts[1]), Integer.parseInt(parts[0]));
+            return MessageDigest.isEqual(expected, actual); // Constant time
+        } catch (IllegalArgumentException e) {
+            return false; // Corrupt row (bad Base64, iteration count or empty salt); nobody can sign in with it
+        }
+    }
+
+    /** True for plain text passwords and for hashes weaker than the current settings. */
+    public static boolean needsRehash(String stored) {
+        if (stored == null || !stored.startsWith(PREFIX)) {
+            return true;
+        }
+        int end = stored.indexOf('$', PREFIX.length());
+        try {
+            return end < 0 || Integer.parseInt(stored.substring(PREFIX.length(), end)) < ITERATIONS;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e); // Part of every Java SE runtime
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.bdsqltester.auth;
+
+/** A signed-in user, as returned by {@link Authenticator#login(String, String, String)}. */
+public class Session {
+    public final int userId;
+    public final String username;
+    public final String role;
+
+    Session(int userId, String username, String role) {
+        this.userId = userId;
+        this.username = username;
+        this.role = role;
+    }
+}
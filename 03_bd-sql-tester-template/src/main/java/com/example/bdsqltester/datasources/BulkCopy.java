@@ -0,0 +1,147 @@
+package com.example.bdsqltester.datasources;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * CSV import and export with COPY, streamed straight between a file and the database:
+ * no row is ever held in memory, so a whole roster or a term of grades takes one roundtrip.
+ * Files have a header line; the columns per table are listed in {@link Table}.
+ */
+public class BulkCopy {
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    public enum Table {
+        // New assignments get fresh ids, so an export can be imported into another term
+        ASSIGNMENTS("Assignments", "name, instructions, answer_key",
+                "COPY assignments (name, instructions, answer_key) FROM STDIN WITH (FORMAT csv, HEADER true)",
+                "SELECT name, instructions, answer_key FROM assignments ORDER BY id"),
+        // Passwords may be imported in plain text; they are hashed on the first login. They are never exported.
+        USERS("Users", "username, password, role (import); username, role (export)",
+                "COPY users (username, password, role) FROM STDIN WITH (FORMAT csv, HEADER true)",
+                "SELECT username, role FROM users ORDER BY id"),
+        // Grades are matched to students by username; an imported grade replaces the stored one
+        GRADES("Grades", "assignment_id, username, grade",
+                "COPY grades_import (assignment_id, username, grade) FROM STDIN WITH (FORMAT csv, HEADER true)",
+                "SELECT g.assignment_id, u.username, g.grade FROM grades g JOIN users u ON g.user_id = u.id " +
+                        "ORDER BY g.assignment_id, u.username");
+
+        public final String label;
+        public final String columns;
+        final String copyIn;
+        final String exportQuery;
+
+        Table(String label, String columns, String copyIn, String exportQuery) {
+            this.label = label;
+            this.columns = columns;
+            this.copyIn = copyIn;
+            this.exportQuery = exportQuery;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    /** Rows moved, file size and duration of one import or export. */
+    public static class Stats {
+        public final long rows;
+        public final long bytes;
+        public final long nanos;
+
+        Stats(long rows, long bytes, long nanos) {
+            this.rows = rows;
+            this.bytes = bytes;
+            this.nanos = nanos;
+        }
+
+        public String describe() {
+            double seconds = Math.max(nanos, 1) / 1e9;
+            return String.format("%d rows (%.1f MB) in %d ms: %.0f rows/s, %.1f MB/s",
+                    rows, bytes / 1e6, nanos / 1_000_000, rows / seconds, bytes / 1e6 / seconds);
+        }
+    }
+
+    private BulkCopy() {
+    }
+
+    /** Imports a CSV file in one transaction: either every row goes in or none does. */
+    public static Stats importCsv(Table table, Path file) throws SQLException, IOException {
+        long start = System.nanoTime();
+        long rows;
+        try (Connection conn = MainDataSource.getConnection();
+             InputStream in = new BufferedInputStream(Files.newInputStream(file), BUFFER_BYTES)) {
+            conn.setAutoCommit(false);
+            try {
+                CopyManager copy = conn.unwrap(PGConnection.class).getCopyAPI();
+                if (table == Table.GRADES) {
+                    rows = importGrades(conn, copy, in);
+                } else {
+                    rows = copy.copyIn(table.copyIn, in, BUFFER_BYTES);
+                }
+                conn.commit();
+            } catch (SQLException | IOException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true); // Reset auto-commit behavior (important if connection is pooled)
+            }
+        }
+        return new Stats(rows, Files.size(file), System.nanoTime() - start);
+    }
+
+    // Grades name the student, not the user id, so they go through a staging table first
+    private static long importGrades(Connection conn, CopyManager copy, InputStream in) throws SQLException, IOException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TEMP TABLE grades_import (assignment_id INTEGER, username TEXT, grade DOUBLE PRECISION) " +
+                    "ON COMMIT DROP");
+            long copied = copy.copyIn(Table.GRADES.copyIn, in, BUFFER_BYTES);
+            int unknown;
+            try (ResultSet rs = stmt.executeQuery("SELECT count(*) FROM grades_import i " +
+                    "WHERE NOT EXISTS (SELECT 1 FROM users u WHERE u.username = i.username)")) {
+                rs.next();
+                unknown = rs.getInt(1);
+            }
+            if (unknown > 0) {
+                throw new SQLException(unknown + " of the " + copied + " grades belong to unknown usernames.");
+            }
+            // One INSERT cannot update the same grade twice, and it isn't clear which of the two grades is meant
+            try (ResultSet rs = stmt.executeQuery("SELECT assignment_id, username, count(*) FROM grades_import " +
+                    "GROUP BY assignment_id, username HAVING count(*) > 1 ORDER BY assignment_id, username LIMIT 1")) {
+                if (rs.next()) {
+                    throw new SQLException("The file has " + rs.getInt(3) + " grades for " + rs.getString(2)
+                            + " in assignment " + rs.getInt(1) + "; keep only one grade per student and assignment.");
+                }
+            }
+            return stmt.executeUpdate("INSERT INTO grades (assignment_id, user_id, grade) " +
+                    "SELECT i.assignment_id, u.id, i.grade FROM grades_import i JOIN users u ON u.username = i.username " +
+                    "ON CONFLICT (assignment_id, user_id) DO UPDATE SET grade = EXCLUDED.grade");
+        }
+    }
+
+    /** Writes the table to a CSV file, overwriting it. */
+    public static Stats exportCsv(Table table, Path file) throws SQLException, IOException {
+        long start = System.nanoTime();
+        long rows;
+        try (Connection conn = MainDataSource.getConnection();
+             OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), BUFFER_BYTES)) {
+            CopyManager copy = conn.unwrap(PGConnection.class).getCopyAPI();
+            rows = copy.copyOut("COPY (" + table.exportQuery + ") TO STDOUT WITH (FORMAT csv, HEADER true)", out);
+        }
+        return new Stats(rows, Files.size(file), System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.bdsqltester.datasources;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Delivers Postgres notifications (NOTIFY, usually sent by triggers) to listeners in this client.
+ * One dedicated connection outside the pools LISTENs on every channel anyone subscribed to.
+ * If that connection drops, the feed reconnects and calls {@link Listener#onResync()}, because
+ * notifications sent in the meantime are lost.
+ * A new subscription only hears of changes once its channel is LISTENed on, which happens on the feed thread
+ * a moment later; {@link Listener#onListening()} says when that is, so a first load can start from there.
+ * Listeners are called on the feed thread and must hand UI work to the JavaFX thread themselves.
+ */
+public class ChangeFeed {
+
+    public interface Listener {
+        void onNotification(String payload);
+
+        /** The channel is LISTENed on now; changes committed from here on are delivered. Called once per subscription. */
+        default void onListening() {
+        }
+
+        /** Changes may have been missed; reload everything. */
+        default void onResync() {
+        }
+    }
+
+    private static final String URL = "jdbc:postgresql://localhost:5432/sql-tester";
+    private static final int POLL_TIMEOUT_MS = 1000;
+    private static final long RECONNECT_DELAY_MS = 2000;
+
+    private static final Map<String, List<Listener>> listeners = new ConcurrentHashMap<>();
+    // Channels the feed thread still has to LISTEN on
+    private static final List<String> newChannels = new CopyOnWriteArrayList<>();
+    // Listeners still waiting for onListening
+    private static final Queue<Listener> newListeners = new ConcurrentLinkedQueue<>();
+    private static Thread thread;
+
+    private ChangeFeed() {
+    }
+
+    /** Subscribes to a channel; close the returned handle to unsubscribe. */
+    public static AutoCloseable subscribe(String channel, Listener listener) {
+        listeners.computeIfAbsent(channel, c -> {
+            newChannels.add(c);
+            return new CopyOnWriteArrayList<>();
+        }).add(listener);
+        // Queued after its channel, so the feed thread LISTENs on the channel before it tells the listener
+        newListeners.add(listener);
+        startIfNeeded();
+        return () -> {
+            newListeners.remove(listener);
+            listeners.get(channel).remove(listener);
+        };
+    }
+
+    private static synchronized void startIfNeeded() {
+        if (thread == null) {
+            thread = Thread.ofPlatform().daemon().name("change-feed").start(ChangeFeed::run);
+        }
+    }
+
+    private static void run() {
+        boolean reconnecting = false;
+        // Taken off newListeners before the channels are LISTENed on; kept until told, also across a reconnect
+        List<Listener> waiting = new ArrayList<>();
+        while (true) {
+            try (Connection conn = DriverManager.getConnection(URL, "postgres", "12345")) {
+                takeNewListeners(waiting);
+                newChannels.clear();
+                for (String channel : listeners.keySet()) {
+                    listen(conn, channel);
+                }
+                if (reconnecting) {
+                    listeners.values().forEach(list -> list.stream()
+                            .filter(listener -> !waiting.contains(listener))
+                            .forEach(ChangeFeed::resync));
+                }
+                reconnecting = true;
+                tellListening(waiting);
+
+                PGConnection pgConn = conn.unwrap(PGConnection.class);
+                while (true) {
+                    takeNewListeners(waiting);
+                    for (String channel : newChannels) {
+                        newChannels.remove(channel);
+                        listen(conn, channel);
+                    }
+                    tellListening(waiting);
+                    // Blocks until something arrives or the timeout passes
+                    PGNotification[] notifications = pgConn.getNotifications(POLL_TIMEOUT_MS);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        for (Listener listener : listeners.getOrDefault(notification.getName(), List.of())) {
+                            notify(listener, notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                e.printStackTrace(); // Reconnects below
+            }
+            try {
+                Thread.sleep(RECONNECT_DELAY_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private static void listen(Connection conn, String channel) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("LISTEN \"" + channel.replace("\"", "\"\"") + "\"");
+        }
+    }
+
+    private static void takeNewListeners(List<Listener> waiting) {
+        Listener listener;
+        while ((listener = newListeners.poll()) != null) {
+            waiting.add(listener);
+        }
+    }
+
+    private static void tellListening(List<Listener> waiting) {
+        for (Listener listener : waiting) {
+            if (listeners.values().stream().noneMatch(list -> list.contains(listener))) {
+                continue; // Unsubscribed meanwhile
+            }
+            try {
+                listener.onListening();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+        waiting.clear();
+    }
+
+    // A failing listener must not stop the feed for everyone else
+    private static void notify(Listener listener, String payload) {
+        try {
+            listener.onNotification(payload);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void resync(Listener listener) {
+        try {
+            listener.onResync();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+}
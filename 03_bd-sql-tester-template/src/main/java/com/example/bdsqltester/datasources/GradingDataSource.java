@@ -1,36 +1,79 @@
 // src/main/java/com/example/bdsqltester/datasources/GradingDataSource.java
 package com.example.bdsqltester.datasources;
 
+import com.example.bdsqltester.grading.ExecutionLimits;
+import com.example.bdsqltester.metrics.PoolMetricsTrackerFactory;
+import com.example.bdsqltester.metrics.StartupTimings;
 import com.zaxxer.hikari.HikariConfig;
-import com.zaxxer.hikari.HikariDataSource;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
+/**
+ * Connections for running student and answer key queries.
+ * By default everything goes to one server; for big exams, list several servers holding identical
+ * copies of the dataset and each connection goes to the least loaded one (see {@link GradingRouter}):
+ * <pre>-Dgrading.urls=jdbc:postgresql://localhost:5432/sql-tester,jdbc:postgresql://localhost:5433/sql-tester</pre>
+ */
 public class GradingDataSource {
 
-    private static HikariDataSource ds;
+    private static final String DEFAULT_URL = "jdbc:postgresql://localhost:5432/sql-tester";
+
+    private static GradingRouter router;
 
     static {
-        HikariConfig config = new HikariConfig();
-        config.setJdbcUrl("jdbc:postgresql://localhost:5432/sql-tester");
-        config.setUsername("postgres"); // Use postgres user
-        config.setPassword("12345"); // Use postgres password
-        config.setDriverClassName("org.postgresql.Driver");
-        config.setMaximumPoolSize(10);
-        config.setMinimumIdle(5);
-        config.setIdleTimeout(30000);
-        config.setConnectionTimeout(10000);
-        config.setMaxLifetime(60000);
-        config.setPoolName("GradingPool");
-        config.setInitializationFailTimeout(-1); // Initialize even if connection fails
-
-        ds = new HikariDataSource(config);
+        String[] urls = System.getProperty("grading.urls", DEFAULT_URL).split(",");
+        List<HikariConfig> configs = new ArrayList<>();
+        for (int i = 0; i < urls.length; i++) {
+            HikariConfig config = new HikariConfig();
+            config.setJdbcUrl(urls[i].trim());
+            config.setUsername("postgres"); // Use postgres user
+            config.setPassword("12345"); // Use postgres password
+            config.setDriverClassName("org.postgresql.Driver");
+            config.setMaximumPoolSize(10);
+            // Grows on demand; a whole lab of clients each holding 5 idle connections adds up on the server
+            config.setMinimumIdle(Integer.getInteger("grading.minIdle", 1));
+            config.setIdleTimeout(30000);
+            config.setConnectionTimeout(10000);
+            config.setMaxLifetime(60000);
+            config.setPoolName(urls.length == 1 ? "GradingPool" : "GradingPool-" + (i + 1));
+            config.setInitializationFailTimeout(-1); // Initialize even if connection fails
+            config.setRegisterMbeans(true); // Active/idle/pending connections over JMX
+            config.setMetricsTrackerFactory(new PoolMetricsTrackerFactory());
+            // Results in the binary format even for one-off statements, so numbers and timestamps are
+            // decoded straight into the comparator's buffers instead of being parsed from text
+            config.addDataSourceProperty("prepareThreshold", "-1");
+            // The student statement timeout is also the session default, not just the SET LOCAL of each transaction
+            config.addDataSourceProperty("options", "-c statement_timeout=" + ExecutionLimits.forStudents().statementTimeoutMs);
+            configs.add(config);
+        }
+
+        router = new GradingRouter(configs);
+        router.startHealthChecks(Long.getLong("grading.healthCheckMs", 5000));
     }
 
     public static Connection getConnection() throws SQLException {
-        return ds.getConnection();
+        return router.getConnection();
+    }
+
+    /** Creates the pools and a first connection on a background thread, so the first submission doesn't wait. */
+    public static void warmUp() {
+        Thread.ofVirtual().name("grading-pool-warmup").start(() -> {
+            try {
+                getConnection().close();
+                StartupTimings.mark("grading pool ready");
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /** Total over all grading servers. */
+    public static int getMaximumPoolSize() {
+        return router.getMaximumPoolSize();
     }
 
     private GradingDataSource() {}
-}
\ No newline at end of file
+}
@@ -0,0 +1,122 @@
+package com.example.bdsqltester.datasources;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spreads grading connections over several Postgres servers holding identical copies of the dataset.
+ * Every connection request goes to the healthy backend with the fewest threads waiting for a connection
+ * (ties go to the one with fewer connections in use). With more than one backend, a background check borrows
+ * a connection from each pool periodically and takes the backends that fail out of rotation until they answer again.
+ */
+class GradingRouter {
+
+    private static final int HEALTH_CHECK_TIMEOUT_SECONDS = 2;
+
+    private final List<Backend> backends = new ArrayList<>();
+
+    /** Creates one pool per config; call {@link #startHealthChecks(long)} once they are all added. */
+    GradingRouter(List<HikariConfig> configs) {
+        for (HikariConfig config : configs) {
+            backends.add(new Backend(config));
+        }
+    }
+
+    /** Does nothing for a single backend: there is nothing to route around, so it would only cost a connection. */
+    void startHealthChecks(long intervalMs) {
+        if (backends.size() < 2) {
+            return;
+        }
+        // One thread per backend, so a server that hangs until the connection timeout doesn't delay the others
+        ScheduledExecutorService healthChecker = Executors.newScheduledThreadPool(backends.size(), r -> {
+            Thread thread = new Thread(r, "grading-health-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (Backend backend : backends) {
+            healthChecker.scheduleWithFixedDelay(backend::checkHealth, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    Connection getConnection() throws SQLException {
+        List<Backend> candidates = new ArrayList<>();
+        for (Backend backend : backends) {
+            if (backend.healthy) {
+                candidates.add(backend);
+            }
+        }
+        if (candidates.isEmpty()) {
+            candidates.addAll(backends); // The health check may be behind; better to try than to fail outright
+        }
+        candidates.sort(Comparator.comparingInt(Backend::pendingThreads).thenComparingInt(Backend::activeConnections));
+
+        SQLException failure = null;
+        for (Backend backend : candidates) {
+            try {
+                return backend.ds.getConnection();
+            } catch (SQLException e) {
+                // Most likely the server is down; the health check puts it back once it answers
+                backend.healthy = false;
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        throw failure;
+    }
+
+    /** Connections the router can hand out at once, over all backends. */
+    int getMaximumPoolSize() {
+        int total = 0;
+        for (Backend backend : backends) {
+            total += backend.ds.getMaximumPoolSize();
+        }
+        return total;
+    }
+
+    private static class Backend {
+        final HikariDataSource ds;
+        volatile boolean healthy = true;
+
+        Backend(HikariConfig config) {
+            ds = new HikariDataSource(config);
+        }
+
+        int pendingThreads() {
+            HikariPoolMXBean pool = ds.getHikariPoolMXBean();
+            return pool != null ? pool.getThreadsAwaitingConnection() : 0;
+        }
+
+        int activeConnections() {
+            HikariPoolMXBean pool = ds.getHikariPoolMXBean();
+            return pool != null ? pool.getActiveConnections() : 0;
+        }
+
+        void checkHealth() {
+            HikariPoolMXBean pool = ds.getHikariPoolMXBean();
+            if (pool != null && pool.getIdleConnections() == 0 && pool.getActiveConnections() > 0) {
+                return; // Busy: a saturated pool must not look like a dead server, and failing queries are noticed anyway
+            }
+            try (Connection conn = ds.getConnection()) {
+                healthy = conn.isValid(HEALTH_CHECK_TIMEOUT_SECONDS);
+            } catch (SQLException e) {
+                if (healthy) {
+                    e.printStackTrace(); // Reported once, when it leaves the rotation
+                }
+                healthy = false;
+            }
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.bdsqltester.datasources;
 
+import com.example.bdsqltester.metrics.PoolMetricsTrackerFactory;
+import com.example.bdsqltester.metrics.StartupTimings;
 import com.zaxxer.hikari.*;
 
 import java.sql.*;
@@ -16,6 +18,10 @@ public class MainDataSource {
         config.addDataSourceProperty("cachePrepStmts", "true");
         config.addDataSourceProperty("prepStmtCacheSize", "250");
         config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+        config.setPoolName("MainPool");
+        config.setRegisterMbeans(true); // Active/idle/pending connections over JMX
+        config.setMetricsTrackerFactory(new PoolMetricsTrackerFactory());
+        config.setInitializationFailTimeout(-1); // Don't connect while the class loads; see warmUp()
         ds = new HikariDataSource(config);
     }
 
@@ -23,6 +29,18 @@ public class MainDataSource {
         return ds.getConnection();
     }
 
+    /** Creates the pool and its first connection on a background thread, e.g. while the login screen is up. */
+    public static void warmUp() {
+        Thread.ofVirtual().name("main-pool-warmup").start(() -> {
+            try {
+                getConnection().close();
+                StartupTimings.mark("main pool ready");
+            } catch (SQLException e) {
+                e.printStackTrace(); // Reported again by whatever needs the database first
+            }
+        });
+    }
+
     private MainDataSource() {
     }
 }
\ No newline at end of file
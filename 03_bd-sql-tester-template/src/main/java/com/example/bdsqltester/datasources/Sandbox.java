@@ -0,0 +1,26 @@
+package com.example.bdsqltester.datasources;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/** A database handed out by {@link SandboxPool} for one submission. Closing it drops the database. */
+public class Sandbox implements AutoCloseable {
+    public final String name;
+    public final Connection connection;
+
+    Sandbox(String name, Connection connection) {
+        this.name = name;
+        this.connection = connection;
+    }
+
+    @Override
+    public void close() {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        } finally {
+            SandboxPool.release(name);
+        }
+    }
+}
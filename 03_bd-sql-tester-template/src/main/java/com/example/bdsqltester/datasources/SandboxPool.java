@@ -0,0 +1,204 @@
+package com.example.bdsqltester.datasources;
+
+import com.example.bdsqltester.grading.ExecutionLimits;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Throw-away databases for grading queries that change data.
+ * Every database is cloned from a template with {@code CREATE DATABASE ... TEMPLATE}, used by exactly one
+ * submission and dropped afterwards, so students never see each other's changes or wait on each other's locks.
+ * Nothing is cloned before the first submission that needs a sandbox; from then on {@code -Dsandbox.size}
+ * (default 1, 0 for none) spare databases are cloned in the background, so the next submission doesn't wait.
+ * <p>
+ * Cleanup: a sandbox is dropped right after use, and the spares when the client exits normally. The databases of
+ * a client that crashed are reclaimed by the next client that starts (see {@link #reclaimOrphans()}): it drops
+ * every sandbox older than {@code -Dsandbox.orphanMinutes} (default 60) that nobody is connected to. The creation
+ * time, taken from the server's clock, is part of the name: {@code sandbox_<epoch seconds>_<client>_<n>}.
+ * A spare is never handed out once it is half that old, so a running client never uses one that may be reclaimed.
+ * <p>
+ * The template must exist and have no connections (see {@code db/03_sandbox_template.sql}).
+ * Settings: {@code -Dsandbox.url} (server, default {@code jdbc:postgresql://localhost:5432/})
+ * and {@code -Dsandbox.template} (default {@code sql-tester-template}).
+ */
+public class SandboxPool {
+
+    private static final String SERVER_URL = System.getProperty("sandbox.url", "jdbc:postgresql://localhost:5432/");
+    private static final String TEMPLATE = System.getProperty("sandbox.template", "sql-tester-template");
+    private static final int SPARES = Integer.getInteger("sandbox.size", 1);
+    private static final long ORPHAN_AGE_SECONDS = 60 * Long.getLong("sandbox.orphanMinutes", 60);
+    // Per process, so several clients can share the server without dropping each other's databases
+    private static final String CLIENT = HexFormat.of().toHexDigits(ThreadLocalRandom.current().nextInt());
+
+    private static final String ORPHANS_SQL = "SELECT d.datname FROM pg_database d " +
+            "WHERE d.datname ~ '^sandbox_[0-9]+_[0-9a-f]{8}_[0-9]+$' " +
+            "AND split_part(d.datname, '_', 2)::bigint < extract(epoch FROM now()) - ? " +
+            "AND NOT EXISTS (SELECT 1 FROM pg_stat_activity a WHERE a.datid = d.oid)";
+
+    private static final Queue<String> spares = new ConcurrentLinkedQueue<>();
+    private static final ExecutorService maintenance = Executors.newVirtualThreadPerTaskExecutor();
+    private static int created;
+    private static int cloning; // Spares being cloned right now
+    private static boolean shutDown;
+
+    private SandboxPool() {
+    }
+
+    /** Hands out a fresh database, cloning one if no spare is ready; closing the sandbox drops it. */
+    public static Sandbox acquire() throws SQLException {
+        String name = takeSpare();
+        if (name == null) {
+            name = cloneTemplate();
+        }
+        if (SPARES > 0) {
+            maintenance.execute(SandboxPool::refill); // Replace the one handed out while it is in use
+        }
+
+        try {
+            return new Sandbox(name, connectToSandbox(name));
+        } catch (SQLException e) {
+            release(name);
+            throw e;
+        }
+    }
+
+    static void release(String name) {
+        maintenance.execute(() -> drop(name));
+    }
+
+    /** Drops the sandboxes crashed clients left behind, in the background; call once when the client starts. */
+    public static void reclaimOrphans() {
+        maintenance.execute(() -> {
+            List<String> orphans = new ArrayList<>();
+            try (Connection conn = connect("postgres");
+                 PreparedStatement stmt = conn.prepareStatement(ORPHANS_SQL)) {
+                stmt.setLong(1, ORPHAN_AGE_SECONDS);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        orphans.add(rs.getString(1));
+                    }
+                }
+                for (String name : orphans) {
+                    try (Statement drop = conn.createStatement()) {
+                        // Without FORCE: if someone connected in the meantime, it is not an orphan after all
+                        drop.execute("DROP DATABASE IF EXISTS " + name);
+                    } catch (SQLException e) {
+                        // In use; the next client to start looks again
+                    }
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /** Drops the spares. */
+    public static void shutdown() {
+        synchronized (SandboxPool.class) {
+            shutDown = true;
+        }
+        String name;
+        while ((name = spares.poll()) != null) {
+            drop(name);
+        }
+    }
+
+    // A spare that is young enough, or null
+    private static String takeSpare() {
+        String name;
+        while ((name = spares.poll()) != null) {
+            long createdAt = Long.parseLong(name.split("_")[1]);
+            if (System.currentTimeMillis() / 1000 - createdAt < ORPHAN_AGE_SECONDS / 2) {
+                return name;
+            }
+            release(name);
+        }
+        return null;
+    }
+
+    private static void refill() {
+        synchronized (SandboxPool.class) {
+            if (shutDown || spares.size() + cloning >= SPARES) {
+                return;
+            }
+            cloning++;
+        }
+        try {
+            String name = cloneTemplate();
+            synchronized (SandboxPool.class) {
+                if (!shutDown) {
+                    spares.add(name);
+                    name = null;
+                }
+            }
+            if (name != null) {
+                drop(name);
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        } finally {
+            synchronized (SandboxPool.class) {
+                cloning--;
+            }
+        }
+    }
+
+    private static String cloneTemplate() throws SQLException {
+        int n;
+        synchronized (SandboxPool.class) {
+            n = created++;
+        }
+        try (Connection conn = connect("postgres");
+             Statement stmt = conn.createStatement()) {
+            long now;
+            try (ResultSet rs = stmt.executeQuery("SELECT extract(epoch FROM now())::bigint")) {
+                rs.next();
+                now = rs.getLong(1);
+            }
+            String name = "sandbox_" + now + "_" + CLIENT + "_" + n;
+            stmt.execute("CREATE DATABASE " + name + " TEMPLATE " + quote(TEMPLATE));
+            return name;
+        }
+    }
+
+    private static void drop(String name) {
+        try (Connection conn = connect("postgres");
+             Statement stmt = conn.createStatement()) {
+            // FORCE ends connections a cancelled query may have left behind
+            stmt.execute("DROP DATABASE IF EXISTS " + name + " WITH (FORCE)");
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static Connection connect(String database) throws SQLException {
+        return DriverManager.getConnection(SERVER_URL + database, "postgres", "12345");
+    }
+
+    // The student statement timeout is also the session default, not just the SET LOCAL of the transaction
+    private static Connection connectToSandbox(String database) throws SQLException {
+        Properties properties = new Properties();
+        properties.setProperty("user", "postgres");
+        properties.setProperty("password", "12345");
+        properties.setProperty("options", "-c statement_timeout=" + ExecutionLimits.forSandbox().statementTimeoutMs);
+        return DriverManager.getConnection(SERVER_URL + database, properties);
+    }
+
+    private static String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.bdsqltester.dtos;
+
+import com.example.bdsqltester.datasources.MainDataSource;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Full assignments (with instructions and answer key) by id, loaded on first use.
+ * Assignment lists only hold id and name; the details come from here when one is opened.
+ * Keeps the most recently used ones, {@code -Dassignments.cacheSize} (default 32) at most.
+ */
+public class AssignmentCache {
+
+    private static final int MAX_SIZE = Integer.getInteger("assignments.cacheSize", 32);
+
+    // Access order, so the eldest entry is the least recently used one
+    private static final Map<Long, Assignment> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Assignment> eldest) {
+            return size() > MAX_SIZE;
+        }
+    };
+    // Bumped on every invalidation, so a load that raced with a change is not cached
+    private static long invalidations;
+
+    private AssignmentCache() {
+    }
+
+    /** Returns null if the assignment doesn't exist (anymore). */
+    public static Assignment get(long id) throws SQLException {
+        long invalidationsBefore;
+        synchronized (cache) {
+            Assignment cached = cache.get(id);
+            if (cached != null) {
+                return cached;
+            }
+            invalidationsBefore = invalidations;
+        }
+
+        Assignment loaded;
+        try (Connection c = MainDataSource.getConnection();
+             PreparedStatement stmt = c.prepareStatement("SELECT * FROM assignments WHERE id = ?")) {
+            stmt.setLong(1, id);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                loaded = new Assignment(rs);
+            }
+        }
+        synchronized (cache) {
+            if (invalidations == invalidationsBefore) {
+                cache.put(id, loaded);
+            }
+        }
+        return loaded;
+    }
+
+    /** Stores an assignment that was just saved, so opening it again needs no query. */
+    public static void put(Assignment assignment) {
+        synchronized (cache) {
+            cache.put(assignment.id, assignment);
+        }
+    }
+
+    /** Forgets an assignment that was changed or deleted elsewhere. */
+    public static void invalidate(long id) {
+        synchronized (cache) {
+            invalidations++;
+            cache.remove(id);
+        }
+    }
+
+    /** Forgets everything, e.g. after changes may have been missed. */
+    public static void clear() {
+        synchronized (cache) {
+            invalidations++;
+            cache.clear();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.bdsqltester.dtos;
+
+import com.example.bdsqltester.datasources.MainDataSource;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The assignment list (id and name) as of one catalog version, kept on disk so a client can show it
+ * before it has talked to the database. The server version comes from {@code catalog_versions}
+ * (see {@code db/06_catalog_versions.sql}); the list only has to be fetched when it differs.
+ * Stored in {@code -Dassignments.snapshotDir} (default {@code ~/.bd-sql-tester}) as
+ * {@code assignments-<version>.snapshot}: magic, format, version, count, then id and UTF-8 name per assignment.
+ */
+public class AssignmentSnapshot {
+
+    private static final int MAGIC = 0x42445341; // "BDSA"
+    private static final int FORMAT = 1;
+    private static final Path DIRECTORY = Path.of(System.getProperty("assignments.snapshotDir",
+            Path.of(System.getProperty("user.home"), ".bd-sql-tester").toString()));
+    private static final String GLOB = "assignments-*.snapshot";
+
+    public final long version;
+    public final List<Assignment> assignments;
+
+    public AssignmentSnapshot(long version, List<Assignment> assignments) {
+        this.version = version;
+        this.assignments = assignments;
+    }
+
+    /** The newest snapshot on disk, or null if there is none that can be read. */
+    public static AssignmentSnapshot read() {
+        Path newest = null;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(DIRECTORY, GLOB)) {
+            for (Path file : files) {
+                if (newest == null || Files.getLastModifiedTime(file).compareTo(Files.getLastModifiedTime(newest)) > 0) {
+                    newest = file;
+                }
+            }
+            return newest == null ? null : read(newest);
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            return null; // No directory yet, or a damaged file: fall back to the database
+        }
+    }
+
+    private static AssignmentSnapshot read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT) {
+                return null;
+            }
+            long version = buffer.getLong();
+            int count = buffer.getInt();
+            if (count < 0 || count > buffer.remaining() / 12) { // Each entry takes at least an id and a length
+                return null;
+            }
+            List<Assignment> assignments = new ArrayList<>(count);
+            byte[] name = new byte[256];
+            for (int i = 0; i < count; i++) {
+                long id = buffer.getLong();
+                int length = buffer.getInt();
+                if (length < 0 || length > buffer.remaining()) {
+                    return null;
+                }
+                if (length > name.length) {
+                    name = new byte[length];
+                }
+                buffer.get(name, 0, length);
+                assignments.add(new Assignment(id, new String(name, 0, length, StandardCharsets.UTF_8), null, null));
+            }
+            return new AssignmentSnapshot(version, assignments);
+        }
+    }
+
+    /**
+     * Replaces the snapshot on disk. Each version gets its own file, because an older one may still be mapped
+     * (which on Windows blocks replacing it); older files are removed when possible.
+     */
+    public void write() throws IOException {
+        List<byte[]> names = new ArrayList<>(assignments.size());
+        int size = 4 + 4 + 8 + 4;
+        for (Assignment assignment : assignments) {
+            byte[] name = assignment.name == null ? new byte[0] : assignment.name.getBytes(StandardCharsets.UTF_8);
+            names.add(name);
+            size += 8 + 4 + name.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC).putInt(FORMAT).putLong(version).putInt(assignments.size());
+        for (int i = 0; i < assignments.size(); i++) {
+            buffer.putLong(assignments.get(i).id).putInt(names.get(i).length).put(names.get(i));
+        }
+        buffer.flip();
+
+        Files.createDirectories(DIRECTORY);
+        Path file = DIRECTORY.resolve("assignments-" + version + ".snapshot");
+        Path temp = Files.createTempFile(DIRECTORY, "assignments-", ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        // Readers see either the old file or the complete new one
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(DIRECTORY, GLOB)) {
+            for (Path old : files) {
+                if (!old.equals(file)) {
+                    try {
+                        Files.deleteIfExists(old);
+                    } catch (IOException e) {
+                        // Still mapped somewhere; removed on a later write
+                    }
+                }
+            }
+        }
+    }
+
+    /** The current catalog version on the server: one single-row query. */
+    public static long serverVersion() throws SQLException {
+        try (Connection c = MainDataSource.getConnection();
+             PreparedStatement stmt = c.prepareStatement("SELECT version FROM catalog_versions WHERE name = 'assignments'");
+             ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : -1;
+        }
+    }
+
+    /** Fetches the list together with the version it belongs to, in one statement so both are consistent. */
+    public static AssignmentSnapshot load() throws SQLException {
+        String sql = "SELECT v.version, a.id, a.name FROM catalog_versions v " +
+                "LEFT JOIN assignments a ON true WHERE v.name = 'assignments' ORDER BY a.id";
+        long version = -1;
+        List<Assignment> assignments = new ArrayList<>();
+        try (Connection c = MainDataSource.getConnection();
+             PreparedStatement stmt = c.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                version = rs.getLong(1);
+                long id = rs.getLong(2);
+                if (!rs.wasNull()) { // No assignments: one row without an id
+                    assignments.add(new Assignment(id, rs.getString(3), null, null));
+                }
+            }
+        }
+        return new AssignmentSnapshot(version, assignments);
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.bdsqltester.grading;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides which waiting grading work gets one of the grading connections next.
+ * Every user has a lane of their own with a limit on how much of their work runs at once;
+ * whenever a slot frees up, the lanes with waiting work take turns (round robin), so one student
+ * spamming Submit or Test only ever delays their own work. The queue is bounded, in total and per user:
+ * work that does not fit is rejected right away with an {@link AdmissionRejectedException}
+ * instead of waiting for the pool's connection timeout.
+ * Staff work (regrading, the admin's Test button) shares one lane that is never rejected.
+ */
+public class AdmissionController {
+
+    private static final Object STAFF = new Object();
+
+    private final Executor executor;
+    private final int slots;
+    private final int maxQueued;
+    private final int maxQueuedPerUser;
+    private final int maxRunningPerUser;
+
+    // Guarded by this
+    private final Map<Object, Lane> lanes = new HashMap<>();
+    private final ArrayDeque<Lane> turns = new ArrayDeque<>(); // Lanes with waiting work, next turn first
+    private int running;
+    private int queued; // User work only; staff work does not count against the bound
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    public AdmissionController(Executor executor, int slots, int maxQueued, int maxQueuedPerUser, int maxRunningPerUser) {
+        this.executor = executor;
+        this.slots = slots;
+        this.maxQueued = maxQueued;
+        this.maxQueuedPerUser = maxQueuedPerUser;
+        this.maxRunningPerUser = maxRunningPerUser;
+    }
+
+    private static final class Lane {
+        final Object key;
+        final int maxRunning;
+        final boolean bounded;
+        final ArrayDeque<Runnable> waiting = new ArrayDeque<>();
+        int running;
+
+        Lane(Object key, int maxRunning, boolean bounded) {
+            this.key = key;
+            this.maxRunning = maxRunning;
+            this.bounded = bounded;
+        }
+    }
+
+    /**
+     * Runs the user's work once it is their turn and a slot is free.
+     * The future fails with an {@link AdmissionRejectedException} straight away if the queue is full.
+     */
+    public <T> CompletableFuture<T> submit(long userId, Callable<T> work) {
+        return enqueue(userId, maxRunningPerUser, true, work);
+    }
+
+    /** Runs staff work in its own lane, which takes its turn like any user's but may use every slot. */
+    public <T> CompletableFuture<T> submitStaff(Callable<T> work) {
+        return enqueue(STAFF, slots, false, work);
+    }
+
+    private <T> CompletableFuture<T> enqueue(Object key, int maxRunning, boolean bounded, Callable<T> work) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Runnable task = () -> {
+            try {
+                future.complete(work.call());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        };
+        synchronized (this) {
+            Lane lane = lanes.computeIfAbsent(key, k -> new Lane(k, maxRunning, bounded));
+            if (bounded) {
+                String reason = null;
+                if (lane.waiting.size() >= maxQueuedPerUser) {
+                    reason = "You already have " + lane.waiting.size() + " queries waiting to run. "
+                            + "Wait for them to finish before sending more.";
+                } else if (queued >= maxQueued) {
+                    reason = "Grading is busy: " + queued + " queries are already waiting. Please try again in a moment.";
+                }
+                if (reason != null) {
+                    forgetIfIdle(lane);
+                    rejected.incrementAndGet();
+                    future.completeExceptionally(new AdmissionRejectedException(reason));
+                    return future;
+                }
+                queued++;
+            }
+            if (lane.waiting.isEmpty()) {
+                turns.addLast(lane);
+            }
+            lane.waiting.addLast(task);
+            dispatch();
+        }
+        return future;
+    }
+
+    // Starts waiting work while slots are free, one task per lane per turn
+    private void dispatch() {
+        while (running < slots) {
+            Lane next = null;
+            for (Iterator<Lane> it = turns.iterator(); it.hasNext(); ) {
+                Lane lane = it.next();
+                if (lane.running < lane.maxRunning) {
+                    it.remove();
+                    next = lane;
+                    break;
+                }
+            }
+            if (next == null) {
+                return; // Every lane with waiting work is at its own limit
+            }
+            Runnable task = next.waiting.removeFirst();
+            if (!next.waiting.isEmpty()) {
+                turns.addLast(next); // Back of the line for its next task
+            }
+            if (next.bounded) {
+                queued--;
+            }
+            next.running++;
+            running++;
+            Lane lane = next;
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    finished(lane);
+                }
+            });
+        }
+    }
+
+    private synchronized void finished(Lane lane) {
+        lane.running--;
+        running--;
+        forgetIfIdle(lane);
+        dispatch();
+    }
+
+    private void forgetIfIdle(Lane lane) {
+        if (lane.running == 0 && lane.waiting.isEmpty()) {
+            lanes.remove(lane.key);
+        }
+    }
+
+    public synchronized int getRunning() {
+        return running;
+    }
+
+    /** User work waiting for a slot. */
+    public synchronized int getQueued() {
+        return queued;
+    }
+
+    /** User work turned away since startup because the queue was full. */
+    public long getRejected() {
+        return rejected.get();
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.bdsqltester.grading;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Grading work turned away by the {@link AdmissionController} because its queue is full.
+ * The message is meant for the student.
+ */
+public class AdmissionRejectedException extends RejectedExecutionException {
+
+    private static final long serialVersionUID = 1L;
+
+    public AdmissionRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.bdsqltester.grading;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Remembers, in this client, the fingerprint of each assignment's answer key result, so the answer key runs once
+ * per dataset version (see {@code db/07_dataset_version.sql}) instead of once per submission.
+ * A result of up to {@code -Dgrading.memoRowBytes} (default 1 MB) also keeps its rows, for diffing wrong results.
+ * Only the latest answer key and version of each assignment are kept; verdicts on student queries are shared
+ * through {@link GradedResultCache}.
+ * <p>
+ * An answer key is only remembered if its result depends on nothing but the dataset: every table in its plan
+ * carries the {@code dataset_version} trigger and it calls no stable or volatile function. This is checked once
+ * per answer key with {@code EXPLAIN (VERBOSE)}. The version is read in the grading transaction itself, which is
+ * REPEATABLE READ (see {@link ExecutionLimits#apply}), so it belongs to the same snapshot as the rows.
+ * Off with a numeric tolerance, which a fingerprint cannot honour.
+ */
+final class AnswerKeyMemo {
+
+    private static final Pattern RELATION = Pattern.compile("\"Relation Name\":\\s*\"([^\"]*)\",\\s*\"Schema\":\\s*\"([^\"]*)\"");
+    // Over-matches (e.g. inside string literals), which only ever makes an answer key look less deterministic
+    private static final Pattern CALL = Pattern.compile("([A-Za-z_][A-Za-z0-9_$]*)\\(");
+    // Shown without parentheses in the plan
+    private static final Pattern SESSION_VALUE = Pattern.compile(
+            "\\b(CURRENT_DATE|CURRENT_TIME|CURRENT_TIMESTAMP|LOCALTIME|LOCALTIMESTAMP|CURRENT_ROLE|CURRENT_USER"
+                    + "|SESSION_USER|USER|CURRENT_CATALOG|CURRENT_SCHEMA)\\b");
+
+    private static final String DETERMINISTIC_SQL =
+            "SELECT to_regclass('catalog_versions') IS NOT NULL " +
+            "AND NOT EXISTS (SELECT 1 FROM unnest(?::text[], ?::text[]) AS r(schema_name, relation_name) " +
+            "                WHERE NOT EXISTS (SELECT 1 FROM pg_trigger t WHERE t.tgname = 'dataset_version' " +
+            "                                  AND t.tgrelid = to_regclass(format('%I.%I', r.schema_name, r.relation_name)))) " +
+            "AND NOT EXISTS (SELECT 1 FROM pg_proc WHERE proname = ANY (?::text[]) AND provolatile <> 'i')";
+
+    static final long ROW_BYTES = Long.getLong("grading.memoRowBytes", 1024L * 1024);
+
+    /** The answer key's result: its fingerprint, and its rows if they were small enough to keep (else null). */
+    record Answer(ResultFingerprint fingerprint, ResultDiff.SortedRows rows) {
+    }
+
+    private record Entry(String answerKey, boolean deterministic, long version, Answer answer) {
+    }
+
+    private static final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+
+    private AnswerKeyMemo() {
+    }
+
+    static boolean isEnabled() {
+        return ResultComparator.NUMERIC_TOLERANCE == 0;
+    }
+
+    /**
+     * The dataset version the grading transaction sees, or -1 if the answer key's result may not be remembered.
+     * A failed check leaves a fresh transaction with the same limits behind.
+     */
+    static long datasetVersion(Connection conn, Submission submission, ExecutionLimits limits) throws SQLException {
+        if (!isEnabled()) {
+            return -1;
+        }
+        try {
+            Entry entry = entries.get(submission.assignmentId);
+            if (entry == null || !entry.answerKey.equals(submission.answerKey)) {
+                entry = new Entry(submission.answerKey, isDeterministic(conn, submission.answerKey), -1, null);
+                entries.put(submission.assignmentId, entry);
+            }
+            if (!entry.deterministic) {
+                return -1;
+            }
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT version FROM catalog_versions WHERE name = 'dataset'")) {
+                return rs.next() ? rs.getLong(1) : -1;
+            }
+        } catch (SQLException e) {
+            // A broken answer key, or a database without the migration; grade without the memo
+            conn.rollback();
+            limits.apply(conn);
+            return -1;
+        }
+    }
+
+    /** The remembered result of the answer key on this dataset version, or null. */
+    static Answer get(Submission submission, long version) {
+        Entry entry = entries.get(submission.assignmentId);
+        if (entry == null || !entry.answerKey.equals(submission.answerKey) || entry.version != version) {
+            return null;
+        }
+        return entry.answer;
+    }
+
+    static void put(Submission submission, long version, Answer answer) {
+        entries.computeIfPresent(submission.assignmentId, (id, entry) -> entry.answerKey.equals(submission.answerKey)
+                && entry.deterministic && version >= entry.version
+                ? new Entry(entry.answerKey, true, version, answer)
+                : entry);
+    }
+
+    /**
+     * Whether the result of the query depends on nothing but the dataset, judged from its plan (see above).
+     * Also used for student queries by {@link GradedResultCache}. Fails if the query can't be planned.
+     */
+    static boolean isDeterministic(Connection conn, String sql) throws SQLException {
+        StringBuilder plan = new StringBuilder();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("EXPLAIN (VERBOSE, FORMAT JSON) " + sql)) {
+            while (rs.next()) {
+                plan.append(rs.getString(1));
+            }
+        }
+        if (SESSION_VALUE.matcher(plan).find()) {
+            return false;
+        }
+        List<String> schemas = new ArrayList<>();
+        List<String> relations = new ArrayList<>();
+        for (Matcher m = RELATION.matcher(plan); m.find(); ) {
+            relations.add(m.group(1));
+            schemas.add(m.group(2));
+        }
+        Set<String> functions = new LinkedHashSet<>();
+        for (Matcher m = CALL.matcher(plan); m.find(); ) {
+            functions.add(m.group(1));
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(DETERMINISTIC_SQL)) {
+            stmt.setArray(1, conn.createArrayOf("text", schemas.toArray()));
+            stmt.setArray(2, conn.createArrayOf("text", relations.toArray()));
+            stmt.setArray(3, conn.createArrayOf("text", functions.toArray()));
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+}
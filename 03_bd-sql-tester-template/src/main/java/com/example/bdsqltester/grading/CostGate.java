@@ -0,0 +1,94 @@
+package com.example.bdsqltester.grading;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Turns away a student query whose plan is far more expensive than the answer key's, before it runs.
+ * Both are planned with {@code EXPLAIN (FORMAT JSON)}, which does not execute anything. The student's estimated
+ * total cost and row count may be at most {@code -Dgrading.costFactor} (default 100) times the answer key's;
+ * a cost up to {@code -Dgrading.minCost} (default 100000) and rows up to the row limit are always allowed,
+ * so a cheap answer key still leaves room for a different approach. A factor of 0 turns the gate off.
+ * The answer key's plan is cached per assignment until its text changes.
+ */
+final class CostGate {
+
+    static final double FACTOR = Double.parseDouble(System.getProperty("grading.costFactor", "100"));
+    private static final double MIN_COST = Double.parseDouble(System.getProperty("grading.minCost", "100000"));
+
+    // The top plan node's fields come before its "Plans", so the first match belongs to the whole query
+    private static final Pattern TOTAL_COST = Pattern.compile("\"Total Cost\":\\s*([0-9.eE+-]+)");
+    private static final Pattern PLAN_ROWS = Pattern.compile("\"Plan Rows\":\\s*([0-9.eE+-]+)");
+
+    record Plan(double cost, double rows) {
+    }
+
+    private record AnswerPlan(String answerKey, Plan plan) {
+    }
+
+    private static final Map<Long, AnswerPlan> answerPlans = new ConcurrentHashMap<>();
+
+    private CostGate() {
+    }
+
+    static boolean isEnabled() {
+        return FACTOR > 0;
+    }
+
+    /** The plan of the assignment's answer key, planned on the given connection on first use. */
+    static Plan answerPlan(Connection conn, long assignmentId, String answerKey) throws SQLException {
+        AnswerPlan cached = answerPlans.get(assignmentId);
+        if (cached != null && cached.answerKey.equals(answerKey)) {
+            return cached.plan;
+        }
+        Plan plan = explain(conn, answerKey);
+        answerPlans.put(assignmentId, new AnswerPlan(answerKey, plan));
+        return plan;
+    }
+
+    /**
+     * Plans the student's query and returns why it may not run, or null if it may.
+     * Throws if the query cannot even be planned (e.g. a syntax error), just as running it would.
+     */
+    static String check(Connection conn, String query, Plan answerPlan, long maxRows) throws SQLException {
+        Plan plan = explain(conn, query);
+        double maxCost = Math.max(answerPlan.cost * FACTOR, MIN_COST);
+        if (plan.cost > maxCost) {
+            return String.format(Locale.ROOT, "The estimated cost of your query (%.0f) is more than %.0f times that of "
+                    + "the expected solution (%.0f), so it was not run. Look for a missing join condition or filter.",
+                    plan.cost, FACTOR, answerPlan.cost);
+        }
+        double maxPlanRows = Math.max(answerPlan.rows * FACTOR, maxRows);
+        if (plan.rows > maxPlanRows) {
+            return String.format(Locale.ROOT, "Your query is estimated to return %.0f rows, more than %.0f times as many "
+                    + "as the expected solution (%.0f), so it was not run.", plan.rows, FACTOR, answerPlan.rows);
+        }
+        return null;
+    }
+
+    private static Plan explain(Connection conn, String query) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("EXPLAIN (FORMAT JSON) " + query)) {
+            StringBuilder json = new StringBuilder();
+            while (rs.next()) {
+                json.append(rs.getString(1));
+            }
+            return new Plan(number(TOTAL_COST, json), number(PLAN_ROWS, json));
+        }
+    }
+
+    private static double number(Pattern field, CharSequence json) throws SQLException {
+        Matcher m = field.matcher(json);
+        if (!m.find()) {
+            throw new SQLException("Unexpected EXPLAIN output: " + field.pattern() + " not found");
+        }
+        return Double.parseDouble(m.group(1));
+    }
+}
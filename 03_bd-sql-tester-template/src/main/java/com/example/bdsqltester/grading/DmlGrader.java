@@ -0,0 +1,147 @@
+package com.example.bdsqltester.grading;
+
+import com.example.bdsqltester.datasources.Sandbox;
+import com.example.bdsqltester.datasources.SandboxPool;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Grades assignments whose answer key changes data (INSERT, UPDATE, DELETE, ...).
+ * The student's statement runs in its own sandbox database and the resulting tables are compared
+ * with the tables the answer key leaves behind, using a row count and an order-independent hash per table.
+ * The answer key's table state is computed once per dataset version of the sandbox template (see
+ * {@code db/07_dataset_version.sql}) and kept in memory, only the latest one per assignment. A template without
+ * the version computes it for every submission.
+ * A sandbox that cannot be had (e.g. the template is missing) is an infrastructure error: the SQLException is thrown,
+ * it is neither the student's nor the answer key's fault.
+ */
+class DmlGrader {
+
+    // Leading comments and whitespace, then the first keyword
+    private static final Pattern DATA_CHANGING = Pattern.compile(
+            "^(\\s|--[^\\n]*\\n?|/\\*.*?\\*/)*(insert|update|delete|merge|truncate)\\b",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private static final String TABLES_SQL = "SELECT table_schema, table_name FROM information_schema.tables " +
+            "WHERE table_type = 'BASE TABLE' AND table_schema NOT IN ('pg_catalog', 'information_schema') " +
+            "ORDER BY table_schema, table_name";
+
+    private static final String VERSION_SQL = "SELECT version FROM catalog_versions WHERE name = 'dataset'";
+
+    private record ExpectedState(String answerKey, long version, Map<String, String> tables) {
+    }
+
+    private static final Map<Long, ExpectedState> expectedStates = new ConcurrentHashMap<>();
+
+    private DmlGrader() {
+    }
+
+    static boolean changesData(String answerKey) {
+        return answerKey != null && DATA_CHANGING.matcher(answerKey).lookingAt();
+    }
+
+    static GradingResult score(Submission submission) throws SQLException {
+        try (Sandbox sandbox = SandboxPool.acquire()) {
+            long version = datasetVersion(sandbox.connection);
+            Map<String, String> expected = expectedState(submission, version);
+            if (expected == null) {
+                try (Sandbox answerSandbox = SandboxPool.acquire()) {
+                    if (datasetVersion(answerSandbox.connection) != version) {
+                        // One of them is a spare cloned before the template was re-created
+                        throw new SQLException("The grading dataset changed while this submission was graded; please submit again.");
+                    }
+                    try {
+                        expected = run(answerSandbox.connection, submission.answerKey);
+                    } catch (SQLException e) {
+                        // This is an error with the assignment setup (answer key query is invalid)
+                        SqlNormalizer.answerKeyRan(submission.assignmentId, submission.answerKey, false);
+                        return new GradingResult(GradingResult.Outcome.ANSWER_KEY_ERROR, 0, e.getMessage());
+                    }
+                }
+                if (version >= 0) {
+                    remember(submission, version, expected);
+                }
+                SqlNormalizer.answerKeyRan(submission.assignmentId, submission.answerKey, true);
+            }
+
+            Map<String, String> actual;
+            try {
+                actual = run(sandbox.connection, submission.userQuery);
+            } catch (SQLException e) {
+                return new GradingResult(Grader.classify(e), 0, e.getMessage());
+            }
+            return Grader.graded(submission, expected.equals(actual));
+        }
+    }
+
+    private static Map<String, String> expectedState(Submission submission, long version) {
+        ExpectedState state = expectedStates.get(submission.assignmentId);
+        if (version < 0 || state == null || !state.answerKey.equals(submission.answerKey) || state.version != version) {
+            return null;
+        }
+        return state.tables;
+    }
+
+    // Only the latest state per assignment is kept; an older version never replaces a newer one
+    private static void remember(Submission submission, long version, Map<String, String> tables) {
+        expectedStates.merge(submission.assignmentId, new ExpectedState(submission.answerKey, version, tables),
+                (old, latest) -> old.answerKey.equals(latest.answerKey) && old.version > latest.version ? old : latest);
+    }
+
+    // The version the sandbox was cloned at, or -1 if its template has no version (read before anything changes it)
+    private static long datasetVersion(Connection conn) {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(VERSION_SQL)) {
+            return rs.next() ? rs.getLong(1) : -1;
+        } catch (SQLException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Runs the statement in the sandbox and returns "row count:hash" per table afterwards.
+     * The changes are never committed; the sandbox is dropped when it is closed.
+     */
+    private static Map<String, String> run(Connection conn, String sql) throws SQLException {
+        ExecutionLimits.requireSingleStatement(sql);
+        ExecutionLimits.forSandbox().apply(conn);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+        return tableChecksums(conn);
+    }
+
+    private static Map<String, String> tableChecksums(Connection conn) throws SQLException {
+        List<String> tables = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(TABLES_SQL)) {
+            while (rs.next()) {
+                tables.add(quote(rs.getString(1)) + "." + quote(rs.getString(2)));
+            }
+        }
+
+        Map<String, String> checksums = new TreeMap<>();
+        if (tables.isEmpty()) {
+            return checksums;
+        }
+        // One roundtrip for all tables; summing row hashes makes the checksum independent of row order
+        StringJoiner sql = new StringJoiner(" UNION ALL ");
+        for (int i = 0; i < tables.size(); i++) {
+            sql.add("SELECT " + i + ", count(*), coalesce(sum(hashtextextended(t::text, 0)), 0) FROM " + tables.get(i) + " t");
+        }
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql.toString())) {
+            while (rs.next()) {
+                checksums.put(tables.get(rs.getInt(1)), rs.getLong(2) + ":" + rs.getString(3));
+            }
+        }
+        return checksums;
+    }
+
+    private static String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+}
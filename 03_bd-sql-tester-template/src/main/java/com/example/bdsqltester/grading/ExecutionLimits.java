@@ -0,0 +1,81 @@
+package com.example.bdsqltester.grading;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Resource limits for running untrusted SQL.
+ * Defaults can be changed with system properties, e.g. {@code -Dgrading.statementTimeoutMs=5000}.
+ */
+public class ExecutionLimits {
+    public final boolean readOnly;
+    public final long statementTimeoutMs;
+    public final long maxRows;
+    public final long maxBytes;
+    public final int workMemKb;
+
+    public ExecutionLimits(boolean readOnly, long statementTimeoutMs, long maxRows, long maxBytes, int workMemKb) {
+        this.readOnly = readOnly;
+        this.statementTimeoutMs = statementTimeoutMs;
+        this.maxRows = maxRows;
+        this.maxBytes = maxBytes;
+        this.workMemKb = workMemKb;
+    }
+
+    /** Limits for student queries: read-only and bounded in time, rows, bytes and sort memory. */
+    public static ExecutionLimits forStudents() {
+        return new ExecutionLimits(
+                true,
+                Long.getLong("grading.statementTimeoutMs", 10_000),
+                Long.getLong("grading.maxRows", 100_000),
+                Long.getLong("grading.maxBytes", 16L * 1024 * 1024),
+                Integer.getInteger("grading.workMemKb", 4 * 1024));
+    }
+
+    /** Limits for student queries that change data: run in a throw-away sandbox database, so writes are allowed. */
+    public static ExecutionLimits forSandbox() {
+        ExecutionLimits students = forStudents();
+        return new ExecutionLimits(false, students.statementTimeoutMs, students.maxRows, students.maxBytes, students.workMemKb);
+    }
+
+    /** Limits for admins testing answer keys: same timeout, but writes are allowed (and rolled back). */
+    public static ExecutionLimits forAdmins() {
+        ExecutionLimits students = forStudents();
+        return new ExecutionLimits(false, students.statementTimeoutMs, Long.MAX_VALUE, Long.MAX_VALUE, students.workMemKb);
+    }
+
+    /**
+     * Refuses SQL that holds more than one statement; a trailing semicolon is fine.
+     * The driver sends all statements of a string in one go, so a later one could undo the limits of the
+     * transaction (e.g. {@code COMMIT; SET statement_timeout = 0; SELECT ...}). Fails like a syntax error.
+     */
+    public static void requireSingleStatement(String sql) throws SQLException {
+        if (SqlNormalizer.statementCount(sql) > 1) {
+            throw new SQLException("Only one SQL statement can be run at a time. Remove everything after the first ';'.",
+                    "42601");
+        }
+    }
+
+    /**
+     * Starts a transaction on the connection with these limits applied.
+     * SET LOCAL only lasts until the transaction ends, so the pooled connection is clean again after rollback.
+     * A read-only transaction is REPEATABLE READ, so all of its queries see the same data.
+     * The untrusted SQL run in it must be a single statement (see {@link #requireSingleStatement}); grading and
+     * sandbox connections also carry the student statement timeout as their session default.
+     */
+    public void apply(Connection conn) throws SQLException {
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            // One roundtrip; all values are numbers, so building the string is safe
+            stmt.execute((readOnly ? "SET TRANSACTION ISOLATION LEVEL REPEATABLE READ, READ ONLY; " : "") +
+                    "SET LOCAL statement_timeout = " + statementTimeoutMs + "; " +
+                    "SET LOCAL work_mem = " + workMemKb);
+        }
+    }
+
+    /** Tracks how much of the row and byte budget a result has used so far. */
+    public ResultBudget newBudget() {
+        return new ResultBudget(maxRows, maxBytes);
+    }
+}
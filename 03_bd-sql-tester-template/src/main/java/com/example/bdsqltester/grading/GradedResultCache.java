@@ -0,0 +1,139 @@
+package com.example.bdsqltester.grading;
+
+import com.example.bdsqltester.datasources.MainDataSource;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Verdicts of graded queries, shared by every client through the {@code graded_results} table of the main database
+ * (see {@code db/09_graded_results.sql}). An entry is keyed by assignment, canonical student query
+ * (see {@link SqlNormalizer}) and the dataset version of the grading database (see {@code db/07_dataset_version.sql}),
+ * and only counts for the answer key it was graded against. A query that anyone already submitted on the same data
+ * is scored from it without running either query.
+ * <p>
+ * Only a query whose result depends on nothing but the dataset is shared, checked like an answer key
+ * (see {@link AnswerKeyMemo#isDeterministic}); the answer key must pass the same check. Errors and limit breaches
+ * are never shared. The least recently used entries are dropped beyond {@code -Dgrading.resultCacheRows}
+ * (default 100000). Without the table, grading works as before.
+ */
+final class GradedResultCache {
+
+    private static final int MAX_ROWS = Integer.getInteger("grading.resultCacheRows", 100_000);
+    // Entries this client adds between two eviction passes
+    private static final int EVICT_EVERY = 100;
+
+    // Touches the entry too, so eviction sees it as used
+    private static final String GET_SQL =
+            "UPDATE graded_results SET used_at = now() " +
+            "WHERE assignment_id = ? AND query_hash = ? AND dataset_version = ? AND answer_key_hash = ? " +
+            "AND (same_result OR with_feedback OR NOT ?) " +
+            "RETURNING same_result, feedback";
+    private static final String PUT_SQL =
+            "INSERT INTO graded_results (assignment_id, query_hash, dataset_version, answer_key_hash, " +
+            "                            same_result, with_feedback, feedback) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (assignment_id, query_hash, dataset_version) DO UPDATE " +
+            "SET answer_key_hash = EXCLUDED.answer_key_hash, same_result = EXCLUDED.same_result, " +
+            "    with_feedback = EXCLUDED.with_feedback, feedback = EXCLUDED.feedback, used_at = now()";
+    private static final String EVICT_SQL =
+            "DELETE FROM graded_results WHERE used_at < " +
+            "(SELECT used_at FROM graded_results ORDER BY used_at DESC OFFSET ? LIMIT 1)";
+
+    record Key(long assignmentId, byte[] queryHash, long datasetVersion, byte[] answerKeyHash) {
+    }
+
+    /** Whether the student's result matched the answer key's, and the feedback shown if it did not. */
+    record Verdict(boolean sameResult, String feedback) {
+    }
+
+    private static final AtomicInteger puts = new AtomicInteger();
+
+    private GradedResultCache() {
+    }
+
+    /**
+     * The key of the student's query on the data this grading transaction sees, or null if its verdict may not be
+     * shared. datasetVersion comes from {@link AnswerKeyMemo#datasetVersion}, which is -1 unless the answer key
+     * qualifies. A failed check leaves a fresh transaction with the same limits behind.
+     */
+    static Key key(Connection conn, Submission submission, long datasetVersion, ExecutionLimits limits)
+            throws SQLException {
+        if (datasetVersion < 0) {
+            return null;
+        }
+        try {
+            if (!AnswerKeyMemo.isDeterministic(conn, submission.userQuery)) {
+                return null;
+            }
+        } catch (SQLException e) {
+            // Can't be planned (e.g. a syntax error); it runs and reports its error as usual
+            conn.rollback();
+            limits.apply(conn);
+            return null;
+        }
+        return new Key(submission.assignmentId, sha256(SqlNormalizer.normalize(submission.userQuery)),
+                datasetVersion, sha256(submission.answerKey));
+    }
+
+    /** The shared verdict, or null. A wrong result graded without feedback does not count when feedback is wanted. */
+    static Verdict get(Key key, boolean withFeedback) {
+        try (Connection c = MainDataSource.getConnection();
+             PreparedStatement stmt = c.prepareStatement(GET_SQL)) {
+            stmt.setLong(1, key.assignmentId);
+            stmt.setBytes(2, key.queryHash);
+            stmt.setLong(3, key.datasetVersion);
+            stmt.setBytes(4, key.answerKeyHash);
+            stmt.setBoolean(5, withFeedback);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? new Verdict(rs.getBoolean(1), rs.getString(2)) : null;
+            }
+        } catch (SQLException e) {
+            report(e);
+            return null; // Grade without the cache
+        }
+    }
+
+    static void put(Key key, boolean withFeedback, Verdict verdict) {
+        try (Connection c = MainDataSource.getConnection()) {
+            try (PreparedStatement stmt = c.prepareStatement(PUT_SQL)) {
+                stmt.setLong(1, key.assignmentId);
+                stmt.setBytes(2, key.queryHash);
+                stmt.setLong(3, key.datasetVersion);
+                stmt.setBytes(4, key.answerKeyHash);
+                stmt.setBoolean(5, verdict.sameResult);
+                stmt.setBoolean(6, withFeedback);
+                stmt.setString(7, verdict.feedback);
+                stmt.executeUpdate();
+            }
+            if (puts.incrementAndGet() % EVICT_EVERY == 0) {
+                try (PreparedStatement stmt = c.prepareStatement(EVICT_SQL)) {
+                    stmt.setInt(1, MAX_ROWS);
+                    stmt.executeUpdate();
+                }
+            }
+        } catch (SQLException e) {
+            report(e); // Only the next identical submission gets slower
+        }
+    }
+
+    private static void report(SQLException e) {
+        if (!"42P01".equals(e.getSQLState())) { // undefined_table: db/09 not applied
+            e.printStackTrace();
+        }
+    }
+
+    private static byte[] sha256(String text) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // Every JDK has SHA-256
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package com.example.bdsqltester.grading;
+
+import com.example.bdsqltester.datasources.GradingDataSource;
+import com.example.bdsqltester.datasources.MainDataSource;
+import com.example.bdsqltester.metrics.Metrics;
+
+import java.sql.*;
+
+/**
+ * Grades a submission and saves the score.
+ * Runs on whatever thread calls it, so it must never touch JavaFX controls.
+ */
+public class Grader {
+
+    // Rows fetched per roundtrip while grading; keeps memory flat for large results
+    private static final int GRADING_FETCH_SIZE = 500;
+    // Missing and extra rows shown to a student whose result is wrong
+    private static final int FEEDBACK_ROWS = Integer.getInteger("grading.feedbackRows", 5);
+
+    private Grader() {
+    }
+
+    /** Grades a submission, stores it in the submission history and saves the best score. */
+    public static GradingResult grade(Submission submission) throws SQLException {
+        long start = System.nanoTime();
+        GradingResult result = score(submission);
+        Metrics.stage("execute").recordSince(start);
+
+        start = System.nanoTime();
+        saveResult(submission, result);
+        Metrics.stage("save").recordSince(start);
+        return result;
+    }
+
+    /**
+     * Runs both queries and scores the submission without writing anything.
+     * Both run in one sandboxed transaction (see {@link ExecutionLimits#forStudents()}); a limit breach is
+     * reported as the outcome instead of an error.
+     * A query with the same canonical form as the answer key (see {@link SqlNormalizer}) scores 100 without touching
+     * the grading database, once the answer key has been seen to run.
+     * Assignments whose answer key changes data are graded in a sandbox database by {@link DmlGrader}.
+     * A wrong result comes with a {@link ResultDiff} of the first missing and extra rows as its detail.
+     * A query whose plan is far more expensive than the answer key's is not run at all (see {@link CostGate}).
+     * The fingerprint of the answer key's result is remembered per dataset version (see {@link AnswerKeyMemo}),
+     * so the answer key runs once per version rather than once per submission, and a query anyone already
+     * submitted on the same data is scored from the shared {@link GradedResultCache} without running at all.
+     */
+    public static GradingResult score(Submission submission) throws SQLException {
+        return score(submission, true);
+    }
+
+    /** Like {@link #score(Submission)}; without feedback a wrong result is not run a second time to diff it. */
+    public static GradingResult score(Submission submission, boolean withFeedback) throws SQLException {
+        try {
+            ExecutionLimits.requireSingleStatement(submission.userQuery);
+        } catch (SQLException e) {
+            return new GradingResult(classify(e), 0, e.getMessage());
+        }
+        // Same canonical form as an answer key known to run: correct without running anything
+        String answerKey = SqlNormalizer.runnableAnswerKey(submission.assignmentId, submission.answerKey);
+        if (answerKey != null && SqlNormalizer.normalize(submission.userQuery).equals(answerKey)) {
+            return new GradingResult(GradingResult.Outcome.GRADED, 100, null);
+        }
+        if (DmlGrader.changesData(submission.answerKey)) {
+            return DmlGrader.score(submission);
+        }
+
+        return run(submission, withFeedback);
+    }
+
+    private static GradingResult run(Submission submission, boolean withFeedback) throws SQLException {
+        ExecutionLimits limits = ExecutionLimits.forStudents();
+        SQLException userError = null;
+        String answerError = null;
+        ResultComparator.Match match = ResultComparator.Match.NONE;
+        AnswerKeyMemo.Answer answer = null;
+        boolean answerFromMemo = false;
+        String feedback = null;
+        GradedResultCache.Key cacheKey = null;
+
+        // Both queries stay open at once so their rows can be compared while streaming.
+        // Auto-commit must be off for the driver to fetch through a cursor instead of
+        // loading the whole result up front; the sandbox transaction takes care of that.
+        try (Connection conn = GradingDataSource.getConnection()) {
+            try (Statement userStmt = conn.createStatement();
+                 Statement answerStmt = conn.createStatement()) {
+                limits.apply(conn);
+                userStmt.setFetchSize(GRADING_FETCH_SIZE);
+                answerStmt.setFetchSize(GRADING_FETCH_SIZE);
+                if (CostGate.isEnabled()) {
+                    GradingResult rejected = checkCost(conn, submission, limits);
+                    if (rejected != null) {
+                        return rejected;
+                    }
+                }
+
+                long datasetVersion = AnswerKeyMemo.datasetVersion(conn, submission, limits);
+                cacheKey = GradedResultCache.key(conn, submission, datasetVersion, limits);
+                if (cacheKey != null) {
+                    GradedResultCache.Verdict verdict = GradedResultCache.get(cacheKey, withFeedback);
+                    if (verdict != null) {
+                        return graded(submission, verdict.sameResult(), verdict.feedback());
+                    }
+                }
+
+                try (ResultSet userRs = userStmt.executeQuery(submission.userQuery)) {
+                    if (datasetVersion >= 0) {
+                        // Only the fingerprint of the answer key's result is needed, and it may be remembered already;
+                        // its rows are kept too if they are small, so a wrong result can be diffed without it
+                        answer = AnswerKeyMemo.get(submission, datasetVersion);
+                        answerFromMemo = answer != null;
+                        if (answer == null) {
+                            try (ResultSet answerRs = answerStmt.executeQuery(submission.answerKey)) {
+                                ResultDiff.Recorder rows = new ResultDiff.Recorder(
+                                        answerRs.getMetaData().getColumnCount(), AnswerKeyMemo.ROW_BYTES);
+                                answer = new AnswerKeyMemo.Answer(ResultComparator.fingerprint(answerRs, rows), rows.sorted());
+                                AnswerKeyMemo.put(submission, datasetVersion, answer);
+                            } catch (SQLException e) {
+                                answerError = e.getMessage();
+                            }
+                        }
+                        if (answer != null) {
+                            match = ResultComparator.compare(answer.fingerprint(), userRs, limits.newBudget());
+                        }
+                    } else {
+                        ResultSet answerRs = null;
+                        try {
+                            answerRs = answerStmt.executeQuery(submission.answerKey);
+                        } catch (SQLException e) {
+                            // This is an error with the assignment setup (answer key query is invalid)
+                            answerError = e.getMessage();
+                        }
+                        if (answerRs != null) {
+                            try (ResultSet answerRows = answerRs) {
+                                match = ResultComparator.compare(answerRows, userRs, limits.newBudget());
+                            }
+                        }
+                    }
+                } catch (SQLException e) {
+                    // User's query failed to execute, failed while its rows were read or went over a limit
+                    userError = e;
+                }
+                if (withFeedback && match == ResultComparator.Match.NONE && userError == null && answerError == null) {
+                    if (answer != null && answer.rows() != null) {
+                        feedback = diffFeedback(conn, submission, answer.rows(), limits);
+                    } else if (!answerFromMemo) {
+                        feedback = diffFeedback(conn, submission, limits);
+                    }
+                    // Otherwise only the fingerprint of a large answer key result is known; it is not run just to diff
+                }
+            } finally {
+                conn.rollback(); // Grading never keeps changes made by the queries
+                conn.setAutoCommit(true); // Reset auto-commit behavior (important if connection is pooled)
+            }
+        }
+
+        if (answerError != null) {
+            SqlNormalizer.answerKeyRan(submission.assignmentId, submission.answerKey, false);
+            return new GradingResult(GradingResult.Outcome.ANSWER_KEY_ERROR, 0, answerError);
+        }
+        if (answer != null || userError == null) {
+            SqlNormalizer.answerKeyRan(submission.assignmentId, submission.answerKey, true);
+        }
+        if (userError != null) {
+            // Grade remains 0, this 0 score is still saved.
+            return new GradingResult(classify(userError), 0, userError.getMessage());
+        }
+
+        // SQL queries differ, but their results are identical (e.g., SELECT 999 vs SELECT 1000-1),
+        // either in the same order or only when the row order is ignored.
+        boolean sameResult = match != ResultComparator.Match.NONE;
+        if (cacheKey != null) {
+            GradedResultCache.put(cacheKey, withFeedback, new GradedResultCache.Verdict(sameResult, sameResult ? null : feedback));
+        }
+        return graded(submission, sameResult, feedback);
+    }
+
+    /**
+     * Plans both queries without running them and turns the student's away if it is far more expensive
+     * than the answer key (see {@link CostGate}). Returns null if it may run.
+     * A query that cannot be planned (e.g. a syntax error, or a statement EXPLAIN does not take) is left to run,
+     * so its error is reported as usual, with positions that match the query as written.
+     */
+    private static GradingResult checkCost(Connection conn, Submission submission, ExecutionLimits limits)
+            throws SQLException {
+        try {
+            CostGate.Plan answerPlan = CostGate.answerPlan(conn, submission.assignmentId, submission.answerKey);
+            String reason = CostGate.check(conn, submission.userQuery, answerPlan, limits.maxRows);
+            return reason == null ? null : new GradingResult(GradingResult.Outcome.TOO_EXPENSIVE, 0, reason);
+        } catch (SQLException e) {
+            // The failed EXPLAIN aborted the transaction; start a fresh one with the same limits
+            conn.rollback();
+            limits.apply(conn);
+            return null;
+        }
+    }
+
+    /**
+     * Runs both queries again, now to the end, and describes how the results differ.
+     * The comparison stops at the first sign of a mismatch, so its rows cannot be reused for this.
+     * Each side is held to the student limits. Returns null if the second run fails; the score does not depend on it.
+     */
+    private static String diffFeedback(Connection conn, Submission submission, ExecutionLimits limits) {
+        try (Statement userStmt = conn.createStatement();
+             Statement answerStmt = conn.createStatement()) {
+            userStmt.setFetchSize(GRADING_FETCH_SIZE);
+            answerStmt.setFetchSize(GRADING_FETCH_SIZE);
+            try (ResultSet userRs = userStmt.executeQuery(submission.userQuery);
+                 ResultSet answerRs = answerStmt.executeQuery(submission.answerKey)) {
+                return ResultDiff.diff(answerRs, limits.newBudget(), userRs, limits.newBudget(), FEEDBACK_ROWS).describe();
+            }
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    /** Like {@link #diffFeedback(Connection, Submission, ExecutionLimits)}, against answer key rows kept earlier. */
+    private static String diffFeedback(Connection conn, Submission submission, ResultDiff.SortedRows answerRows,
+                                       ExecutionLimits limits) {
+        try (Statement userStmt = conn.createStatement()) {
+            userStmt.setFetchSize(GRADING_FETCH_SIZE);
+            try (ResultSet userRs = userStmt.executeQuery(submission.userQuery)) {
+                return ResultDiff.diff(answerRows, userRs, limits.newBudget(), FEEDBACK_ROWS).describe();
+            }
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    static GradingResult graded(Submission submission, boolean sameResult) {
+        return graded(submission, sameResult, null);
+    }
+
+    static GradingResult graded(Submission submission, boolean sameResult, String detail) {
+        int calculatedGrade = 0;
+        if (submission.userQuery.trim().equalsIgnoreCase(submission.answerKey.trim())) {
+            calculatedGrade = 100; // Exact textual match of the SQL queries
+        } else if (sameResult) {
+            calculatedGrade = 50;
+        }
+
+        return new GradingResult(GradingResult.Outcome.GRADED, calculatedGrade, calculatedGrade == 0 ? detail : null);
+    }
+
+    static GradingResult.Outcome classify(SQLException e) {
+        if (e instanceof ResultLimitExceededException limitExceeded) {
+            return limitExceeded.limit == ResultLimitExceededException.Limit.ROWS
+                    ? GradingResult.Outcome.ROW_LIMIT
+                    : GradingResult.Outcome.BYTE_LIMIT;
+        }
+        if ("57014".equals(e.getSQLState())) { // query_canceled, raised by statement_timeout
+            return GradingResult.Outcome.TIMEOUT;
+        }
+        if ("25006".equals(e.getSQLState())) { // read_only_sql_transaction
+            return GradingResult.Outcome.WRITE_REJECTED;
+        }
+        return GradingResult.Outcome.QUERY_ERROR;
+    }
+
+    /**
+     * Stores the submission and keeps the best grade in one roundtrip.
+     * The upsert relies on the unique (assignment_id, user_id) key of grades, so two submissions
+     * of the same student racing each other can never lose the higher score.
+     * Submissions that hit a broken answer key are stored without a grade.
+     */
+    static void saveResult(Submission submission, GradingResult result) throws SQLException {
+        try (Connection connection = MainDataSource.getConnection()) {
+            if (result.outcome == GradingResult.Outcome.ANSWER_KEY_ERROR) {
+                String insertSql = "INSERT INTO submissions (assignment_id, user_id, query_text) VALUES (?, ?, ?)";
+                try (PreparedStatement stmt = connection.prepareStatement(insertSql)) {
+                    stmt.setLong(1, submission.assignmentId);
+                    stmt.setLong(2, submission.userId);
+                    stmt.setString(3, submission.userQuery);
+                    stmt.executeUpdate();
+                }
+                return;
+            }
+
+            try (PreparedStatement stmt = connection.prepareStatement(SAVE_RESULT_SQL)) {
+                stmt.setLong(1, submission.assignmentId);
+                stmt.setLong(2, submission.userId);
+                stmt.setString(3, submission.userQuery);
+                stmt.setInt(4, result.score);
+                stmt.executeUpdate();
+            }
+        }
+    }
+
+    private static final String SAVE_RESULT_SQL =
+            "WITH s AS (" +
+            "  INSERT INTO submissions (assignment_id, user_id, query_text, grade) VALUES (?, ?, ?, ?)" +
+            "  RETURNING assignment_id, user_id, grade" +
+            ") " +
+            "INSERT INTO grades (assignment_id, user_id, grade) SELECT assignment_id, user_id, grade FROM s " +
+            "ON CONFLICT (assignment_id, user_id) DO UPDATE SET grade = GREATEST(grades.grade, EXCLUDED.grade)";
+}
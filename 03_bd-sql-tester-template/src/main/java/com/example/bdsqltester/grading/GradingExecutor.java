@@ -0,0 +1,82 @@
+package com.example.bdsqltester.grading;
+
+import com.example.bdsqltester.datasources.GradingDataSource;
+import com.example.bdsqltester.metrics.Metrics;
+
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * Runs grading work on virtual threads so the JavaFX thread never waits on JDBC.
+ * At most one piece of work per grading connection runs at a time; the {@link AdmissionController}
+ * decides whose work goes next and turns work away when too much is waiting.
+ * Tunable with {@code -Dgrading.maxQueued} (default 100), {@code -Dgrading.maxQueuedPerUser} (default 3)
+ * and {@code -Dgrading.maxRunningPerUser} (default 2, so a student's Test window does not block their Submit).
+ */
+public class GradingExecutor {
+
+    private static final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private static final AdmissionController admission = new AdmissionController(executor,
+            GradingDataSource.getMaximumPoolSize(),
+            Integer.getInteger("grading.maxQueued", 100),
+            Integer.getInteger("grading.maxQueuedPerUser", 3),
+            Integer.getInteger("grading.maxRunningPerUser", 2));
+
+    private GradingExecutor() {
+    }
+
+    /**
+     * Queues a submission for grading in the student's lane.
+     * The listener is called from the grading thread on every state change.
+     * If the queue is full the future fails right away with an {@link AdmissionRejectedException}.
+     */
+    public static CompletableFuture<GradingResult> submit(Submission submission, Consumer<SubmissionState> listener) {
+        listener.accept(SubmissionState.QUEUED);
+        long queuedAt = System.nanoTime();
+        CompletableFuture<GradingResult> future = admission.submit(submission.userId, () -> {
+            Metrics.stage("queue").recordSince(queuedAt);
+            listener.accept(SubmissionState.RUNNING);
+            try {
+                GradingResult result = Grader.grade(submission);
+                listener.accept(SubmissionState.FINISHED);
+                return result;
+            } catch (Exception e) {
+                listener.accept(SubmissionState.FAILED);
+                throw e;
+            } finally {
+                Metrics.stage("total").recordSince(queuedAt);
+            }
+        });
+        if (future.isCompletedExceptionally()) {
+            listener.accept(SubmissionState.FAILED); // Rejected, it never ran
+        }
+        return future;
+    }
+
+    /** Runs other work that needs a grading connection (e.g. the Test button) in the user's lane. */
+    public static <T> CompletableFuture<T> supplyForUser(long userId, Callable<T> work) {
+        return admission.submit(userId, work);
+    }
+
+    /** Runs staff work that needs a grading connection once a grading slot is free; it is never rejected. */
+    public static <T> CompletableFuture<T> supplyInSlot(Callable<T> work) {
+        return admission.submitStaff(work);
+    }
+
+    /** Runs any blocking database work off the calling thread. */
+    public static <T> CompletableFuture<T> supply(Callable<T> work) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                future.complete(work.call());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        return future;
+    }
+
+    public static AdmissionController getAdmission() {
+        return admission;
+    }
+}
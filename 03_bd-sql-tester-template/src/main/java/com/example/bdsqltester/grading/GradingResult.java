@@ -0,0 +1,25 @@
+package com.example.bdsqltester.grading;
+
+public class GradingResult {
+
+    public enum Outcome {
+        GRADED,          // Both queries ran, score reflects how well the results matched
+        QUERY_ERROR,     // The student's query failed, scored 0
+        TIMEOUT,         // The student's query ran longer than the statement timeout, scored 0
+        ROW_LIMIT,       // The student's result had too many rows, scored 0
+        BYTE_LIMIT,      // The student's result was too large, scored 0
+        WRITE_REJECTED,  // The student's query tried to modify data, scored 0
+        TOO_EXPENSIVE,   // The student's query was planned far more expensive than the answer key and not run, scored 0
+        ANSWER_KEY_ERROR // The answer key is broken, nothing is saved
+    }
+
+    public final Outcome outcome;
+    public final int score;
+    public final String detail;
+
+    public GradingResult(Outcome outcome, int score, String detail) {
+        this.outcome = outcome;
+        this.score = score;
+        this.detail = detail;
+    }
+}
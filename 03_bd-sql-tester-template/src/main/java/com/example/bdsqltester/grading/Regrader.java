@@ -0,0 +1,113 @@
+package com.example.bdsqltester.grading;
+
+import com.example.bdsqltester.datasources.MainDataSource;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Re-grades the stored submissions of an assignment, e.g. after its answer key was fixed.
+ * Submissions are scored in parallel, but never with more queries in flight than the grading pool allows.
+ */
+public class Regrader {
+
+    private Regrader() {
+    }
+
+    /** Returns the number of re-graded submissions. */
+    public static int regradeAssignment(long assignmentId) throws SQLException {
+        String answerKey = loadAnswerKey(assignmentId);
+        if (answerKey == null || answerKey.isBlank()) {
+            throw new SQLException("The answer key for assignment " + assignmentId + " is empty.");
+        }
+
+        List<Long> submissionIds = new ArrayList<>();
+        List<CompletableFuture<GradingResult>> results = new ArrayList<>();
+        String selectSql = "SELECT id, user_id, query_text FROM submissions WHERE assignment_id = ?";
+        try (Connection conn = MainDataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(selectSql)) {
+            stmt.setLong(1, assignmentId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    long submissionId = rs.getLong("id");
+                    Submission submission = new Submission(assignmentId, rs.getLong("user_id"), rs.getString("query_text"), answerKey);
+                    submissionIds.add(submissionId);
+                    results.add(GradingExecutor.supplyInSlot(() -> Grader.score(submission, false)));
+                }
+            }
+        }
+
+        int[] scores = new int[results.size()];
+        for (int i = 0; i < results.size(); i++) {
+            GradingResult result;
+            try {
+                result = results.get(i).join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof SQLException sqlException ? sqlException : new SQLException(e.getCause());
+            }
+            if (result.outcome == GradingResult.Outcome.ANSWER_KEY_ERROR) {
+                throw new SQLException("The answer key query is invalid: " + result.detail);
+            }
+            scores[i] = result.score;
+        }
+
+        writeScores(assignmentId, submissionIds, scores);
+        return scores.length;
+    }
+
+    private static String loadAnswerKey(long assignmentId) throws SQLException {
+        try (Connection conn = MainDataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT answer_key FROM assignments WHERE id = ?")) {
+            stmt.setLong(1, assignmentId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getString("answer_key") : null;
+            }
+        }
+    }
+
+    /**
+     * Writes the new scores back in one batch and rebuilds the best grade of every affected student.
+     * Students without stored submissions keep their grade.
+     */
+    private static void writeScores(long assignmentId, List<Long> submissionIds, int[] scores) throws SQLException {
+        Connection conn = null;
+        try {
+            conn = MainDataSource.getConnection();
+            conn.setAutoCommit(false); // Start transaction
+
+            try (PreparedStatement stmt = conn.prepareStatement("UPDATE submissions SET grade = ? WHERE id = ?")) {
+                for (int i = 0; i < scores.length; i++) {
+                    stmt.setInt(1, scores[i]);
+                    stmt.setLong(2, submissionIds.get(i));
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+
+            // Every submission of the affected students now has a grade, so their best grade can simply replace the old one
+            String upsertSql = "INSERT INTO grades (assignment_id, user_id, grade) " +
+                    "SELECT assignment_id, user_id, MAX(grade) FROM submissions " +
+                    "WHERE assignment_id = ? AND grade IS NOT NULL GROUP BY assignment_id, user_id " +
+                    "ON CONFLICT (assignment_id, user_id) DO UPDATE SET grade = EXCLUDED.grade";
+            try (PreparedStatement stmt = conn.prepareStatement(upsertSql)) {
+                stmt.setLong(1, assignmentId);
+                stmt.executeUpdate();
+            }
+
+            conn.commit();
+        } catch (SQLException e) {
+            if (conn != null) {
+                conn.rollback(); // Leave the old grades in place if anything failed
+            }
+            throw e;
+        } finally {
+            if (conn != null) {
+                conn.setAutoCommit(true); // Reset auto-commit behavior (important if connection is pooled)
+                conn.close();
+            }
+        }
+    }
+}
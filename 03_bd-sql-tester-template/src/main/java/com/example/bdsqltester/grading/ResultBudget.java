@@ -0,0 +1,47 @@
+package com.example.bdsqltester.grading;
+
+/**
+ * Row and byte allowance for one result, charged while the rows are read.
+ * For text, bytes are counted as characters, which matches the wire size for ASCII data;
+ * typed grading rows count fixed-width values by their binary size.
+ */
+public class ResultBudget {
+
+    public static final ResultBudget UNLIMITED = new ResultBudget(Long.MAX_VALUE, Long.MAX_VALUE);
+
+    private final long maxRows;
+    private final long maxBytes;
+    private long rows;
+    private long bytes;
+
+    public ResultBudget(long maxRows, long maxBytes) {
+        this.maxRows = maxRows;
+        this.maxBytes = maxBytes;
+    }
+
+    public void charge(String[] row) throws ResultLimitExceededException {
+        long rowBytes = 0;
+        for (String cell : row) {
+            if (cell != null) {
+                rowBytes += cell.length();
+            }
+        }
+        charge(rowBytes);
+    }
+
+    void charge(RowBuffer row) throws ResultLimitExceededException {
+        charge(row.byteSize());
+    }
+
+    private void charge(long rowBytes) throws ResultLimitExceededException {
+        if (++rows > maxRows) {
+            throw new ResultLimitExceededException(ResultLimitExceededException.Limit.ROWS,
+                    "The result has more than " + maxRows + " rows.");
+        }
+        bytes += rowBytes;
+        if (bytes > maxBytes) {
+            throw new ResultLimitExceededException(ResultLimitExceededException.Limit.BYTES,
+                    "The result is larger than " + maxBytes + " bytes.");
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.bdsqltester.grading;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Compares two result sets while streaming through them.
+ * Rows are never collected: ordered comparison reads both sides in lockstep,
+ * order-insensitive comparison falls back to a multiset fingerprint.
+ * Cells are decoded by column type into one reused {@link RowBuffer} per side, so no per-cell Strings are made
+ * for numbers, booleans and timestamps.
+ */
+public final class ResultComparator {
+
+    public enum Match {
+        ORDERED,   // Same rows in the same order
+        UNORDERED, // Same rows, different order
+        NONE
+    }
+
+    /**
+     * How far apart two numbers may be and still count as equal, from {@code -Dgrading.numericTolerance}.
+     * The default of 0 only accepts the same value, though of any numeric type (1 = 1.0).
+     * Only rows compared in order use it: unordered matches are found by hash, and values within a tolerance
+     * of each other have no common hash, so rows in a different order must match exactly.
+     */
+    public static final double NUMERIC_TOLERANCE = Double.parseDouble(System.getProperty("grading.numericTolerance", "0"));
+
+    private ResultComparator() {
+    }
+
+    public static Match compare(ResultSet expected, ResultSet actual) throws SQLException {
+        return compare(expected, actual, ResultBudget.UNLIMITED);
+    }
+
+    public static Match compare(ResultSet expected, ResultSet actual, ResultBudget actualBudget) throws SQLException {
+        return compare(expected, actual, actualBudget, NUMERIC_TOLERANCE);
+    }
+
+    /**
+     * Reads both result sets in lockstep and classifies how well they match.
+     * Stops early when the shapes or the row counts differ.
+     * Every row of {@code actual} is charged to the budget, which throws once it is used up;
+     * because of the lockstep, {@code expected} is never read further than {@code actual}.
+     * Numbers may differ by up to {@code tolerance} and still count as equal, as long as the rows are in order;
+     * the unordered fallback is exact.
+     */
+    public static Match compare(ResultSet expected, ResultSet actual, ResultBudget actualBudget, double tolerance)
+            throws SQLException {
+        int colCount = expected.getMetaData().getColumnCount();
+        if (actual.getMetaData().getColumnCount() != colCount) {
+            return Match.NONE;
+        }
+
+        RowBuffer expectedRow = new RowBuffer(expected.getMetaData());
+        RowBuffer actualRow = new RowBuffer(actual.getMetaData());
+        ResultFingerprint.Builder expectedPrint = new ResultFingerprint.Builder(colCount);
+        ResultFingerprint.Builder actualPrint = new ResultFingerprint.Builder(colCount);
+        boolean ordered = true;
+
+        while (true) {
+            boolean hasExpected = expected.next();
+            boolean hasActual = actual.next();
+            if (hasExpected != hasActual) {
+                return Match.NONE; // Different row counts can never match
+            }
+            if (!hasExpected) {
+                break;
+            }
+
+            expectedRow.read(expected);
+            actualRow.read(actual);
+            actualBudget.charge(actualRow);
+            if (ordered && !RowBuffer.rowsEqual(expectedRow, actualRow, tolerance)) {
+                ordered = false;
+            }
+            expectedPrint.addRow(hashRow(expectedRow, FNV_OFFSET), hashRow(expectedRow, ALT_SEED));
+            actualPrint.addRow(hashRow(actualRow, FNV_OFFSET), hashRow(actualRow, ALT_SEED));
+        }
+
+        if (ordered) {
+            return Match.ORDERED;
+        }
+        return expectedPrint.build().sameRowsAs(actualPrint.build()) ? Match.UNORDERED : Match.NONE;
+    }
+
+    /**
+     * Classifies how well a result matches one that is only known by its fingerprint (e.g. a cached answer key).
+     * Stops early once the result has more rows than the expected one; every row read is charged to the budget.
+     */
+    public static Match compare(ResultFingerprint expected, ResultSet actual, ResultBudget actualBudget)
+            throws SQLException {
+        int colCount = actual.getMetaData().getColumnCount();
+        if (colCount != expected.columnCount) {
+            return Match.NONE;
+        }
+        RowBuffer row = new RowBuffer(actual.getMetaData());
+        ResultFingerprint.Builder print = new ResultFingerprint.Builder(colCount);
+        for (long rows = 0; actual.next(); rows++) {
+            if (rows == expected.rowCount) {
+                return Match.NONE;
+            }
+            row.read(actual);
+            actualBudget.charge(row);
+            print.addRow(hashRow(row, FNV_OFFSET), hashRow(row, ALT_SEED));
+        }
+        ResultFingerprint actualPrint = print.build();
+        if (actualPrint.sameOrderAs(expected)) {
+            return Match.ORDERED;
+        }
+        return actualPrint.sameRowsAs(expected) ? Match.UNORDERED : Match.NONE;
+    }
+
+    /** Ordered comparison only; returns at the first row that differs. */
+    public static boolean orderedEquals(ResultSet expected, ResultSet actual) throws SQLException {
+        int colCount = expected.getMetaData().getColumnCount();
+        if (actual.getMetaData().getColumnCount() != colCount) {
+            return false;
+        }
+        RowBuffer expectedRow = new RowBuffer(expected.getMetaData());
+        RowBuffer actualRow = new RowBuffer(actual.getMetaData());
+        while (true) {
+            boolean hasExpected = expected.next();
+            boolean hasActual = actual.next();
+            if (hasExpected != hasActual) {
+                return false;
+            }
+            if (!hasExpected) {
+                return true;
+            }
+            expectedRow.read(expected);
+            actualRow.read(actual);
+            if (!RowBuffer.rowsEqual(expectedRow, actualRow, NUMERIC_TOLERANCE)) {
+                return false;
+            }
+        }
+    }
+
+    /** Streams through a result set and returns its fingerprint. */
+    public static ResultFingerprint fingerprint(ResultSet rs) throws SQLException {
+        return fingerprint(rs, null);
+    }
+
+    /** Like {@link #fingerprint(ResultSet)}, also handing every row to the recorder if there is one. */
+    static ResultFingerprint fingerprint(ResultSet rs, ResultDiff.Recorder recorder) throws SQLException {
+        int colCount = rs.getMetaData().getColumnCount();
+        RowBuffer row = new RowBuffer(rs.getMetaData());
+        ResultFingerprint.Builder print = new ResultFingerprint.Builder(colCount);
+        while (rs.next()) {
+            row.read(rs);
+            print.addRow(hashRow(row, FNV_OFFSET), hashRow(row, ALT_SEED));
+            if (recorder != null) {
+                recorder.add(row);
+            }
+        }
+        return print.build();
+    }
+
+    private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+    private static final long ALT_SEED = 0x84222325CBF29CE4L;
+    // Outside the char range, so it never collides with cell text.
+    private static final long COLUMN_MARK = 0x10001L;
+
+    // Column boundaries are hashed too, so ("ab", "c") and ("a", "bc") do not collide.
+    private static long hashRow(RowBuffer row, long seed) {
+        long h = seed;
+        for (int i = 0; i < row.columnCount(); i++) {
+            h = row.hashCell(i, h);
+            h = (h ^ COLUMN_MARK) * FNV_PRIME;
+        }
+        return h;
+    }
+}
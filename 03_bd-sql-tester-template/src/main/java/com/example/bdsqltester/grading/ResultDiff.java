@@ -0,0 +1,438 @@
+package com.example.bdsqltester.grading;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Which rows one result has that the other lacks, for telling a student what is wrong with theirs.
+ * Both results are sorted by a canonical row key (see {@link RowBuffer#appendKey}) with an external merge sort:
+ * up to {@code -Dgrading.diffMemoryBytes} (default 8 MB) of rows per side are kept in memory, sorted and
+ * spilled to a temp file when full, and the sorted runs are merged while both sides are walked together.
+ * Only the first few differing rows are kept, so results larger than the heap can be diffed.
+ */
+public final class ResultDiff {
+
+    public static final long MEMORY_BYTES = Long.getLong("grading.diffMemoryBytes", 8L * 1024 * 1024);
+
+    public final int expectedColumns;
+    public final int actualColumns;
+    public final long missingCount; // Rows of the expected result that the actual one lacks
+    public final long extraCount;   // Rows of the actual result that the expected one lacks
+    public final List<String> missing;
+    public final List<String> extra;
+
+    private ResultDiff(int expectedColumns, int actualColumns, long missingCount, long extraCount,
+                       List<String> missing, List<String> extra) {
+        this.expectedColumns = expectedColumns;
+        this.actualColumns = actualColumns;
+        this.missingCount = missingCount;
+        this.extraCount = extraCount;
+        this.missing = missing;
+        this.extra = extra;
+    }
+
+    /** Same rows, ignoring their order. */
+    public boolean isEmpty() {
+        return expectedColumns == actualColumns && missingCount == 0 && extraCount == 0;
+    }
+
+    /**
+     * Reads both results to the end and diffs them as multisets, keeping the first {@code maxShown}
+     * missing and extra rows (in key order). Every row read is charged to its side's budget.
+     */
+    public static ResultDiff diff(ResultSet expected, ResultBudget expectedBudget,
+                                  ResultSet actual, ResultBudget actualBudget, int maxShown) throws SQLException {
+        int expectedColumns = expected.getMetaData().getColumnCount();
+        int actualColumns = actual.getMetaData().getColumnCount();
+        if (expectedColumns != actualColumns) {
+            return new ResultDiff(expectedColumns, actualColumns, 0, 0, List.of(), List.of());
+        }
+
+        try (ExternalSorter expectedRows = new ExternalSorter();
+             ExternalSorter actualRows = new ExternalSorter()) {
+            expectedRows.addAll(expected, expectedBudget);
+            actualRows.addAll(actual, actualBudget);
+            return merge(expectedColumns, expectedRows.sorted(), actualRows.sorted(), maxShown);
+        } catch (IOException e) {
+            throw new SQLException("Could not spill rows to disk: " + e.getMessage(), e);
+        }
+    }
+
+    /** Like {@link #diff(ResultSet, ResultBudget, ResultSet, ResultBudget, int)}, against rows kept earlier. */
+    public static ResultDiff diff(SortedRows expected, ResultSet actual, ResultBudget actualBudget, int maxShown)
+            throws SQLException {
+        int actualColumns = actual.getMetaData().getColumnCount();
+        if (expected.columnCount != actualColumns) {
+            return new ResultDiff(expected.columnCount, actualColumns, 0, 0, List.of(), List.of());
+        }
+
+        try (ExternalSorter actualRows = new ExternalSorter()) {
+            actualRows.addAll(actual, actualBudget);
+            return merge(actualColumns, new ListCursor(expected.rows), actualRows.sorted(), maxShown);
+        } catch (IOException e) {
+            throw new SQLException("Could not spill rows to disk: " + e.getMessage(), e);
+        }
+    }
+
+    // Walks both sides in key order; rows with the same key cancel out
+    private static ResultDiff merge(int columns, RowCursor e, RowCursor a, int maxShown) throws IOException {
+        long missingCount = 0;
+        long extraCount = 0;
+        List<String> missing = new ArrayList<>();
+        List<String> extra = new ArrayList<>();
+        while (e.peek() != null || a.peek() != null) {
+            int order = e.peek() == null ? 1 : a.peek() == null ? -1 : e.peek().key.compareTo(a.peek().key);
+            if (order == 0) {
+                e.advance();
+                a.advance();
+            } else if (order < 0) {
+                if (missingCount++ < maxShown) {
+                    missing.add(e.peek().text);
+                }
+                e.advance();
+            } else {
+                if (extraCount++ < maxShown) {
+                    extra.add(a.peek().text);
+                }
+                a.advance();
+            }
+        }
+        return new ResultDiff(columns, columns, missingCount, extraCount, missing, extra);
+    }
+
+    /** Feedback for the student. */
+    public String describe() {
+        if (expectedColumns != actualColumns) {
+            return "Expected " + expectedColumns + " columns, your result has " + actualColumns + ".";
+        }
+        if (missingCount == 0 && extraCount == 0) {
+            return "Your result has the right rows.";
+        }
+        StringBuilder text = new StringBuilder();
+        appendRows(text, "Missing rows", missingCount, missing);
+        appendRows(text, "Rows that should not be there", extraCount, extra);
+        return text.toString();
+    }
+
+    private static void appendRows(StringBuilder text, String title, long count, List<String> rows) {
+        if (count == 0) {
+            return;
+        }
+        if (!text.isEmpty()) {
+            text.append('\n');
+        }
+        text.append(title).append(": ").append(count);
+        if (count > rows.size()) {
+            text.append(", the first ").append(rows.size());
+        }
+        text.append('\n');
+        for (String row : rows) {
+            text.append("  ").append(row).append('\n');
+        }
+    }
+
+    private record Row(String key, String text) {
+        // Rough heap size of both Strings and the record
+        long size() {
+            return 2L * (key.length() + text.length()) + 96;
+        }
+    }
+
+    private static final Comparator<Row> BY_KEY = Comparator.comparing(Row::key);
+
+    /** The rows of a small result in key order, so it can be diffed again without running its query. */
+    public static final class SortedRows {
+        private final int columnCount;
+        private final List<Row> rows;
+
+        private SortedRows(int columnCount, List<Row> rows) {
+            this.columnCount = columnCount;
+            this.rows = rows;
+        }
+    }
+
+    /** Keeps the rows of a result as they are read, as long as they fit in {@code maxBytes}. */
+    static final class Recorder {
+        private final int columnCount;
+        private final long maxBytes;
+        private final StringBuilder key = new StringBuilder();
+        private final StringBuilder text = new StringBuilder();
+        private List<Row> rows = new ArrayList<>(); // Null once the rows no longer fit
+        private long bytes;
+
+        Recorder(int columnCount, long maxBytes) {
+            this.columnCount = columnCount;
+            this.maxBytes = maxBytes;
+        }
+
+        void add(RowBuffer row) {
+            if (rows == null) {
+                return;
+            }
+            Row kept = toRow(row, key, text);
+            bytes += kept.size();
+            if (bytes > maxBytes) {
+                rows = null;
+            } else {
+                rows.add(kept);
+            }
+        }
+
+        /** Everything added, or null if it did not fit. */
+        SortedRows sorted() {
+            if (rows == null) {
+                return null;
+            }
+            rows.sort(BY_KEY);
+            return new SortedRows(columnCount, List.copyOf(rows));
+        }
+    }
+
+    private static Row toRow(RowBuffer row, StringBuilder key, StringBuilder text) {
+        key.setLength(0);
+        text.setLength(0);
+        text.append('(');
+        for (int i = 0; i < row.columnCount(); i++) {
+            row.appendKey(i, key);
+            text.append(i == 0 ? "" : ", ").append(row.text(i));
+        }
+        return new Row(key.toString(), text.append(')').toString());
+    }
+
+    /** Rows in key order; {@link #peek()} returns null at the end. */
+    private interface RowCursor {
+        Row peek();
+
+        void advance() throws IOException;
+    }
+
+    /** Sorts rows in memory up to {@link #MEMORY_BYTES} and spills sorted runs to temp files beyond that. */
+    private static final class ExternalSorter implements AutoCloseable {
+        private final List<Row> buffer = new ArrayList<>();
+        private long bufferedBytes;
+        private final List<Path> runFiles = new ArrayList<>();
+        private final List<RunReader> readers = new ArrayList<>();
+
+        void addAll(ResultSet rs, ResultBudget budget) throws SQLException, IOException {
+            RowBuffer row = new RowBuffer(rs.getMetaData());
+            StringBuilder key = new StringBuilder();
+            StringBuilder text = new StringBuilder();
+            while (rs.next()) {
+                row.read(rs);
+                budget.charge(row);
+                add(toRow(row, key, text));
+            }
+        }
+
+        private void add(Row row) throws IOException {
+            buffer.add(row);
+            bufferedBytes += row.size();
+            if (bufferedBytes > MEMORY_BYTES) {
+                spill();
+            }
+        }
+
+        private void spill() throws IOException {
+            buffer.sort(BY_KEY);
+            Path file = Files.createTempFile("sql-tester-diff-", ".run");
+            runFiles.add(file);
+            try (RunWriter writer = new RunWriter(file)) {
+                for (Row row : buffer) {
+                    writer.write(row);
+                }
+            }
+            buffer.clear();
+            bufferedBytes = 0;
+        }
+
+        /** Everything added so far in key order: the spilled runs merged with the rows still in memory. */
+        RowCursor sorted() throws IOException {
+            buffer.sort(BY_KEY);
+            List<RowCursor> sources = new ArrayList<>();
+            sources.add(new ListCursor(buffer));
+            for (Path file : runFiles) {
+                RunReader reader = new RunReader(file);
+                readers.add(reader);
+                sources.add(reader);
+            }
+            return sources.size() == 1 ? sources.get(0) : new MergeCursor(sources);
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+            for (Path file : runFiles) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private static final class ListCursor implements RowCursor {
+        private final List<Row> rows;
+        private int index;
+
+        ListCursor(List<Row> rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public Row peek() {
+            return index < rows.size() ? rows.get(index) : null;
+        }
+
+        @Override
+        public void advance() {
+            index++;
+        }
+    }
+
+    // k-way merge: always continues with the source whose next row has the smallest key
+    private static final class MergeCursor implements RowCursor {
+        private final PriorityQueue<RowCursor> queue = new PriorityQueue<>(Comparator.comparing(RowCursor::peek, BY_KEY));
+
+        MergeCursor(List<RowCursor> sources) {
+            for (RowCursor source : sources) {
+                if (source.peek() != null) {
+                    queue.add(source);
+                }
+            }
+        }
+
+        @Override
+        public Row peek() {
+            return queue.isEmpty() ? null : queue.peek().peek();
+        }
+
+        @Override
+        public void advance() throws IOException {
+            RowCursor source = queue.poll();
+            source.advance();
+            if (source.peek() != null) {
+                queue.add(source);
+            }
+        }
+    }
+
+    private static final int IO_BUFFER_BYTES = 64 * 1024;
+
+    // Run file format: key and text of every row, each as a length-prefixed UTF-8 string
+    private static final class RunWriter implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(IO_BUFFER_BYTES);
+
+        RunWriter(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        void write(Row row) throws IOException {
+            writeString(row.key);
+            writeString(row.text);
+        }
+
+        private void writeString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            if (buffer.remaining() < Integer.BYTES) {
+                flush();
+            }
+            buffer.putInt(bytes.length);
+            int offset = 0;
+            while (offset < bytes.length) {
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+                int chunk = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, chunk);
+                offset += chunk;
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    private static final class RunReader implements RowCursor, AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(IO_BUFFER_BYTES);
+        private Row next;
+
+        RunReader(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            buffer.flip(); // Start out empty
+            advance();
+        }
+
+        @Override
+        public Row peek() {
+            return next;
+        }
+
+        @Override
+        public void advance() throws IOException {
+            String key = readString();
+            next = key == null ? null : new Row(key, readString());
+        }
+
+        // Null at the end of the file
+        private String readString() throws IOException {
+            if (!fill(Integer.BYTES)) {
+                return null;
+            }
+            byte[] bytes = new byte[buffer.getInt()];
+            int offset = 0;
+            while (offset < bytes.length) {
+                if (!fill(1)) {
+                    throw new IOException("Run file ends in the middle of a row");
+                }
+                int chunk = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.get(bytes, offset, chunk);
+                offset += chunk;
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        // Makes at least the given number of bytes available; false at the end of the file
+        private boolean fill(int bytes) throws IOException {
+            while (buffer.remaining() < bytes) {
+                buffer.compact();
+                int read = channel.read(buffer);
+                buffer.flip();
+                if (read < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.bdsqltester.grading;
+
+/**
+ * Constant-size summary of a result set.
+ * The unordered sums form a multiset hash: two results with the same rows in any order
+ * produce the same sums, no matter how many rows they contain.
+ */
+public final class ResultFingerprint {
+    public final int columnCount;
+    public final long rowCount;
+    public final long unorderedSum;
+    public final long unorderedSumAlt;
+    public final long orderedHash;
+
+    public ResultFingerprint(int columnCount, long rowCount, long unorderedSum, long unorderedSumAlt, long orderedHash) {
+        this.columnCount = columnCount;
+        this.rowCount = rowCount;
+        this.unorderedSum = unorderedSum;
+        this.unorderedSumAlt = unorderedSumAlt;
+        this.orderedHash = orderedHash;
+    }
+
+    /** Same rows, ignoring their order. */
+    public boolean sameRowsAs(ResultFingerprint other) {
+        return columnCount == other.columnCount
+                && rowCount == other.rowCount
+                && unorderedSum == other.unorderedSum
+                && unorderedSumAlt == other.unorderedSumAlt;
+    }
+
+    /** Same rows in the same order. */
+    public boolean sameOrderAs(ResultFingerprint other) {
+        return sameRowsAs(other) && orderedHash == other.orderedHash;
+    }
+
+    /** Accumulates row hashes into a fingerprint without keeping the rows. */
+    static final class Builder {
+        private final int columnCount;
+        private long rowCount;
+        private long unorderedSum;
+        private long unorderedSumAlt;
+        private long orderedHash = 1;
+
+        Builder(int columnCount) {
+            this.columnCount = columnCount;
+        }
+
+        void addRow(long rowHash, long rowHashAlt) {
+            rowCount++;
+            // Addition is commutative, so the sums do not depend on row order.
+            unorderedSum += mix(rowHash);
+            unorderedSumAlt += mix(rowHashAlt ^ 0x9E3779B97F4A7C15L);
+            orderedHash = orderedHash * 0x100000001B3L + rowHash;
+        }
+
+        ResultFingerprint build() {
+            return new ResultFingerprint(columnCount, rowCount, unorderedSum, unorderedSumAlt, orderedHash);
+        }
+    }
+
+    // SplitMix64 finalizer; spreads the row hash so that sums of similar rows do not cancel out.
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.bdsqltester.grading;
+
+import java.sql.SQLException;
+
+/**
+ * Thrown while reading a result that goes over its {@link ResultBudget}.
+ */
+public class ResultLimitExceededException extends SQLException {
+
+    private static final long serialVersionUID = 1L;
+
+    public enum Limit { ROWS, BYTES }
+
+    public final Limit limit;
+
+    public ResultLimitExceededException(Limit limit, String message) {
+        super(message);
+        this.limit = limit;
+    }
+}
@@ -0,0 +1,333 @@
+package com.example.bdsqltester.grading;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+
+/**
+ * One row of a result, decoded with the native getter of each column and reused for every row.
+ * Integers, booleans and timestamps live in a {@code long[]}, floating point numbers in a {@code double[]};
+ * only numeric and text cells are objects. Numbers compare by value across types (1 = 1.0 = 1.00); a floating
+ * point number stands for its shortest decimal form (0.1, not the binary fraction next to it), or for its exact
+ * value if it is whole. Only {@link #rowsEqual} knows about a tolerance; hashes and sort keys are always exact.
+ * NULL equals only NULL.
+ */
+final class RowBuffer {
+
+    enum Kind {
+        INTEGER,  // longs
+        FLOAT,    // doubles
+        DECIMAL,  // objects: BigDecimal, or String for values BigDecimal can't hold (NaN)
+        BOOLEAN,  // longs: 0 or 1
+        TEMPORAL, // longs: microseconds since the epoch
+        TEXT      // objects: String
+    }
+
+    final Kind[] kinds;
+    final boolean[] nulls;
+    final long[] longs;
+    final double[] doubles;
+    final Object[] objects;
+
+    RowBuffer(ResultSetMetaData metaData) throws SQLException {
+        int columns = metaData.getColumnCount();
+        kinds = new Kind[columns];
+        for (int i = 0; i < columns; i++) {
+            kinds[i] = kindOf(metaData.getColumnType(i + 1), metaData.getColumnTypeName(i + 1));
+        }
+        nulls = new boolean[columns];
+        longs = new long[columns];
+        doubles = new double[columns];
+        objects = new Object[columns];
+    }
+
+    private static Kind kindOf(int sqlType, String typeName) {
+        return switch (sqlType) {
+            case Types.TINYINT, Types.SMALLINT, Types.INTEGER, Types.BIGINT -> Kind.INTEGER;
+            case Types.REAL, Types.FLOAT, Types.DOUBLE -> Kind.FLOAT;
+            case Types.NUMERIC, Types.DECIMAL -> Kind.DECIMAL;
+            case Types.BOOLEAN -> Kind.BOOLEAN;
+            case Types.BIT -> "bool".equals(typeName) ? Kind.BOOLEAN : Kind.TEXT; // Postgres reports bool as BIT, but bit(n) too
+            case Types.DATE, Types.TIMESTAMP, Types.TIMESTAMP_WITH_TIMEZONE -> Kind.TEMPORAL;
+            default -> Kind.TEXT;
+        };
+    }
+
+    int columnCount() {
+        return kinds.length;
+    }
+
+    void read(ResultSet rs) throws SQLException {
+        for (int i = 0; i < kinds.length; i++) {
+            int column = i + 1;
+            switch (kinds[i]) {
+                case INTEGER -> longs[i] = rs.getLong(column);
+                case FLOAT -> doubles[i] = rs.getDouble(column);
+                case BOOLEAN -> longs[i] = rs.getBoolean(column) ? 1 : 0;
+                case TEMPORAL -> {
+                    Timestamp ts = rs.getTimestamp(column);
+                    longs[i] = ts == null ? 0 : Math.floorDiv(ts.getTime(), 1000) * 1_000_000 + ts.getNanos() / 1000;
+                }
+                case DECIMAL -> {
+                    try {
+                        objects[i] = rs.getBigDecimal(column);
+                    } catch (SQLException e) {
+                        objects[i] = rs.getString(column); // 'NaN'::numeric
+                    }
+                }
+                case TEXT -> objects[i] = rs.getString(column);
+            }
+            nulls[i] = rs.wasNull();
+        }
+    }
+
+    /** Approximate wire size: fixed-width values count their binary size, text its length. */
+    long byteSize() {
+        long bytes = 0;
+        for (int i = 0; i < kinds.length; i++) {
+            if (nulls[i]) {
+                continue;
+            }
+            bytes += switch (kinds[i]) {
+                case DECIMAL -> objects[i] instanceof BigDecimal d ? d.precision() : ((String) objects[i]).length();
+                case TEXT -> ((String) objects[i]).length();
+                default -> 8;
+            };
+        }
+        return bytes;
+    }
+
+    /** The cell as text, for showing it to people. */
+    String text(int i) {
+        if (nulls[i]) {
+            return "NULL";
+        }
+        return switch (kinds[i]) {
+            case INTEGER -> Long.toString(longs[i]);
+            case FLOAT -> Double.toString(doubles[i]);
+            case BOOLEAN -> longs[i] == 1 ? "true" : "false";
+            case TEMPORAL -> {
+                Timestamp ts = new Timestamp(Math.floorDiv(longs[i], 1000));
+                ts.setNanos(Math.floorMod(longs[i], 1_000_000) * 1000);
+                yield ts.toString();
+            }
+            case DECIMAL -> objects[i] instanceof BigDecimal d ? d.toPlainString() : (String) objects[i];
+            case TEXT -> (String) objects[i];
+        };
+    }
+
+    static boolean rowsEqual(RowBuffer a, RowBuffer b, double tolerance) {
+        for (int i = 0; i < a.kinds.length; i++) {
+            if (!cellsEqual(a, b, i, tolerance)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static boolean cellsEqual(RowBuffer a, RowBuffer b, int i, double tolerance) {
+        if (a.nulls[i] || b.nulls[i]) {
+            return a.nulls[i] && b.nulls[i];
+        }
+        Kind ka = a.kinds[i];
+        Kind kb = b.kinds[i];
+        if (ka == kb) {
+            switch (ka) {
+                case INTEGER:
+                    if (tolerance == 0) {
+                        return a.longs[i] == b.longs[i];
+                    }
+                    break;
+                case BOOLEAN:
+                case TEMPORAL:
+                    return a.longs[i] == b.longs[i];
+                case TEXT:
+                    return a.objects[i].equals(b.objects[i]);
+                case DECIMAL:
+                    if (a.objects[i] instanceof BigDecimal da && b.objects[i] instanceof BigDecimal db) {
+                        if (tolerance == 0) {
+                            return da.compareTo(db) == 0; // 1.0 = 1.00
+                        }
+                        break;
+                    }
+                    return a.objects[i].equals(b.objects[i]);
+                default:
+                    break;
+            }
+        }
+        if (!isNumber(ka) || !isNumber(kb)) {
+            return false; // Text, booleans and timestamps only equal their own kind
+        }
+        if (ka == Kind.DECIMAL && !(a.objects[i] instanceof BigDecimal)
+                || kb == Kind.DECIMAL && !(b.objects[i] instanceof BigDecimal)) {
+            return false; // NaN against a number
+        }
+        if (tolerance > 0) {
+            double x = a.number(i);
+            double y = b.number(i);
+            return x == y || Math.abs(x - y) <= tolerance || (Double.isNaN(x) && Double.isNaN(y));
+        }
+        boolean finiteA = ka != Kind.FLOAT || Double.isFinite(a.doubles[i]);
+        boolean finiteB = kb != Kind.FLOAT || Double.isFinite(b.doubles[i]);
+        if (!finiteA || !finiteB) {
+            return !finiteA && !finiteB && Double.compare(a.doubles[i], b.doubles[i]) == 0; // NaN = NaN
+        }
+        if (ka == Kind.INTEGER && kb == Kind.INTEGER) {
+            return a.longs[i] == b.longs[i];
+        }
+        if (ka == Kind.FLOAT && kb == Kind.FLOAT) {
+            return a.doubles[i] == b.doubles[i];
+        }
+        return a.exact(i).compareTo(b.exact(i)) == 0;
+    }
+
+    /**
+     * Hash of the cell that agrees with {@link #cellsEqual} for a tolerance of 0: numbers that compare equal
+     * hash equally whatever their type. There is deliberately no tolerance here: values within a tolerance of
+     * each other don't form groups that could share a hash, so unordered comparison is always exact.
+     */
+    long hashCell(int i, long h) {
+        if (nulls[i]) {
+            return mixIn(h, NULL_TAG);
+        }
+        switch (kinds[i]) {
+            case BOOLEAN:
+                return mixIn(mixIn(h, BOOLEAN_TAG), longs[i]);
+            case TEMPORAL:
+                return mixIn(mixIn(h, TEMPORAL_TAG), longs[i]);
+            case TEXT:
+                return hashText(mixIn(h, TEXT_TAG), (String) objects[i]);
+            case INTEGER:
+                return mixIn(mixIn(h, NUMBER_TAG), longs[i]);
+            case FLOAT: {
+                double value = doubles[i];
+                if (!Double.isFinite(value)) {
+                    return mixIn(mixIn(h, SPECIAL_TAG), Double.doubleToLongBits(value));
+                }
+                if (value == Math.rint(value) && Math.abs(value) < 0x1p63) {
+                    return mixIn(mixIn(h, NUMBER_TAG), (long) value); // Also turns -0.0 into 0
+                }
+                if (value != Math.rint(value)) {
+                    return mixIn(mixIn(h, FRACTION_TAG), Double.doubleToLongBits(value));
+                }
+                return hashDecimal(h, exact(i));
+            }
+            default: {
+                if (!(objects[i] instanceof BigDecimal d)) {
+                    return hashText(mixIn(h, TEXT_TAG), (String) objects[i]); // NaN
+                }
+                return hashDecimal(h, d);
+            }
+        }
+    }
+
+    // Whole numbers hash like the same INTEGER, fractions that are the shortest form of a double like that FLOAT
+    private static long hashDecimal(long h, BigDecimal d) {
+        BigDecimal stripped = d.signum() == 0 ? BigDecimal.ZERO : d.stripTrailingZeros();
+        if (stripped.scale() <= 0) {
+            if (stripped.compareTo(LONG_MIN) >= 0 && stripped.compareTo(LONG_MAX) <= 0) {
+                return mixIn(mixIn(h, NUMBER_TAG), stripped.longValue());
+            }
+            return hashText(mixIn(h, NUMBER_TAG), stripped.toPlainString());
+        }
+        double value = stripped.doubleValue();
+        if (Double.isFinite(value) && BigDecimal.valueOf(value).compareTo(stripped) == 0) {
+            return mixIn(mixIn(h, FRACTION_TAG), Double.doubleToLongBits(value));
+        }
+        return hashText(mixIn(h, FRACTION_TAG), stripped.toString());
+    }
+
+    /**
+     * Appends a sort key for the cell that, like {@link #hashCell}, is the same for cells that compare equal,
+     * so results can be sorted and diffed by key. Each cell is tagged and length-prefixed, which keeps
+     * the keys of different rows apart.
+     */
+    void appendKey(int i, StringBuilder key) {
+        if (nulls[i]) {
+            key.append('N');
+            return;
+        }
+        char tag;
+        String value;
+        switch (kinds[i]) {
+            case BOOLEAN -> {
+                tag = 'B';
+                value = Long.toString(longs[i]);
+            }
+            case TEMPORAL -> {
+                tag = 'D';
+                value = Long.toString(longs[i]);
+            }
+            case TEXT -> {
+                tag = 'T';
+                value = (String) objects[i];
+            }
+            default -> {
+                boolean nan = kinds[i] == Kind.DECIMAL && !(objects[i] instanceof BigDecimal);
+                tag = nan ? 'T' : '#';
+                value = nan ? (String) objects[i] : numberKey(i);
+            }
+        }
+        key.append(tag).append(value.length()).append(':').append(value);
+    }
+
+    // 5, 5.0 and 5.00 all become "5"
+    private String numberKey(int i) {
+        if (kinds[i] == Kind.INTEGER) {
+            return Long.toString(longs[i]);
+        }
+        if (kinds[i] == Kind.FLOAT && !Double.isFinite(doubles[i])) {
+            return Double.toString(doubles[i]);
+        }
+        BigDecimal d = exact(i);
+        return d.signum() == 0 ? "0" : d.stripTrailingZeros().toPlainString();
+    }
+
+    private static boolean isNumber(Kind kind) {
+        return kind == Kind.INTEGER || kind == Kind.FLOAT || kind == Kind.DECIMAL;
+    }
+
+    private double number(int i) {
+        return switch (kinds[i]) {
+            case INTEGER -> longs[i];
+            case FLOAT -> doubles[i];
+            default -> ((BigDecimal) objects[i]).doubleValue();
+        };
+    }
+
+    // The value a finite number compares by
+    private BigDecimal exact(int i) {
+        return switch (kinds[i]) {
+            case INTEGER -> BigDecimal.valueOf(longs[i]);
+            case FLOAT -> doubles[i] == Math.rint(doubles[i]) ? new BigDecimal(doubles[i]) : BigDecimal.valueOf(doubles[i]);
+            default -> (BigDecimal) objects[i];
+        };
+    }
+
+    private static final long FNV_PRIME = 0x100000001B3L;
+    // Type tags lie outside the char range, so they never collide with cell text
+    private static final long NULL_TAG = 0x10000L;
+    private static final long NUMBER_TAG = 0x10002L;
+    private static final long BOOLEAN_TAG = 0x10003L;
+    private static final long TEMPORAL_TAG = 0x10004L;
+    private static final long TEXT_TAG = 0x10005L;
+    private static final long FRACTION_TAG = 0x10006L;
+    private static final long SPECIAL_TAG = 0x10007L; // NaN and infinities
+    private static final BigDecimal LONG_MIN = BigDecimal.valueOf(Long.MIN_VALUE);
+    private static final BigDecimal LONG_MAX = BigDecimal.valueOf(Long.MAX_VALUE);
+
+    private static long mixIn(long h, long value) {
+        return (h ^ value) * FNV_PRIME;
+    }
+
+    // FNV-1a over the characters
+    private static long hashText(long h, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            h = (h ^ text.charAt(i)) * FNV_PRIME;
+        }
+        return h;
+    }
+}
@@ -0,0 +1,278 @@
+package com.example.bdsqltester.grading;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Puts SQL into a canonical form so that queries differing only in layout compare equal without running them.
+ * Comments and the trailing semicolon are dropped, whitespace is collapsed, unquoted words are lower-cased
+ * (as Postgres folds them), the optional AS before aliases is removed and the AND-ed conditions of
+ * WHERE, HAVING and ON are sorted. String literals and quoted identifiers are kept exactly as written.
+ * Two queries with the same canonical form always return the same result; the opposite is not true.
+ */
+class SqlNormalizer {
+
+    // Words that end a WHERE, HAVING or ON condition
+    private static final Set<String> CLAUSE_ENDS = Set.of(
+            "group", "order", "limit", "offset", "having", "window", "union", "intersect", "except", "fetch", "for",
+            "returning", "join", "inner", "left", "right", "full", "cross", "natural", "on", "where", "using");
+
+    private record AnswerKey(String text, String normalized, boolean runs) {
+    }
+
+    // assignment id -> its latest answer key
+    private static final Map<Long, AnswerKey> answerKeys = new ConcurrentHashMap<>();
+
+    private SqlNormalizer() {
+    }
+
+    /** The canonical answer key of an assignment, cached until the answer key text changes. */
+    static String normalizedAnswerKey(long assignmentId, String answerKey) {
+        AnswerKey cached = answerKeys.get(assignmentId);
+        if (cached != null && cached.text.equals(answerKey)) {
+            return cached.normalized;
+        }
+        String normalized = normalize(answerKey);
+        answerKeys.put(assignmentId, new AnswerKey(answerKey, normalized, false));
+        return normalized;
+    }
+
+    /**
+     * The canonical answer key of an assignment, or null until it has been seen to run without an error.
+     * A broken answer key must be reported as such, not matched by a copy of it.
+     */
+    static String runnableAnswerKey(long assignmentId, String answerKey) {
+        String normalized = normalizedAnswerKey(assignmentId, answerKey);
+        AnswerKey cached = answerKeys.get(assignmentId);
+        return cached != null && cached.runs && cached.text.equals(answerKey) ? normalized : null;
+    }
+
+    /** Records whether the answer key of an assignment ran; a failure takes back an earlier success. */
+    static void answerKeyRan(long assignmentId, String answerKey, boolean runs) {
+        answerKeys.compute(assignmentId, (id, cached) -> cached != null && cached.text.equals(answerKey)
+                ? new AnswerKey(answerKey, cached.normalized, runs)
+                : new AnswerKey(answerKey, normalize(answerKey), runs));
+    }
+
+    static String normalize(String sql) {
+        List<String> tokens = tokenize(sql);
+        while (!tokens.isEmpty() && tokens.get(tokens.size() - 1).equals(";")) {
+            tokens.remove(tokens.size() - 1);
+        }
+        return String.join(" ", sortConditions(tokens));
+    }
+
+    /**
+     * Number of statements in the SQL: the stretches between semicolons that hold anything but comments.
+     * Semicolons inside string literals, quoted identifiers and comments do not count.
+     */
+    static int statementCount(String sql) {
+        int count = 0;
+        boolean inStatement = false;
+        for (String token : tokenize(sql)) {
+            if (token.equals(";")) {
+                inStatement = false;
+            } else if (!inStatement) {
+                inStatement = true;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static List<String> tokenize(String sql) {
+        List<String> tokens = new ArrayList<>();
+        int n = sql.length();
+        int i = 0;
+        while (i < n) {
+            char c = sql.charAt(i);
+            int start = i;
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (sql.startsWith("--", i)) {
+                while (i < n && sql.charAt(i) != '\n') {
+                    i++;
+                }
+            } else if (sql.startsWith("/*", i)) {
+                // Block comments nest in Postgres
+                int depth = 0;
+                do {
+                    if (sql.startsWith("/*", i)) {
+                        depth++;
+                        i += 2;
+                    } else if (sql.startsWith("*/", i)) {
+                        depth--;
+                        i += 2;
+                    } else {
+                        i++;
+                    }
+                } while (depth > 0 && i < n);
+            } else if (c == '\'') {
+                i = endOfQuoted(sql, i, '\'', false);
+                tokens.add(sql.substring(start, i));
+            } else if ((c == 'e' || c == 'E') && i + 1 < n && sql.charAt(i + 1) == '\'') {
+                i = endOfQuoted(sql, i + 1, '\'', true);
+                tokens.add("e" + sql.substring(start + 1, i));
+            } else if (c == '"') {
+                i = endOfQuoted(sql, i, '"', false);
+                // Never unquoted: "rows" or "left" is an identifier where rows or left may be a keyword
+                tokens.add(sql.substring(start, i));
+            } else if (c == '$' && dollarTag(sql, i) != null) {
+                String tag = dollarTag(sql, i);
+                int close = sql.indexOf(tag, i + tag.length());
+                i = close < 0 ? n : close + tag.length();
+                tokens.add(sql.substring(start, i));
+            } else if (Character.isLetter(c) || c == '_') {
+                while (i < n && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '_' || sql.charAt(i) == '$')) {
+                    i++;
+                }
+                String word = sql.substring(start, i).toLowerCase(Locale.ROOT);
+                if (!word.equals("as")) {
+                    tokens.add(word);
+                }
+            } else if (Character.isDigit(c) || (c == '.' && i + 1 < n && Character.isDigit(sql.charAt(i + 1)))) {
+                while (i < n && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '.'
+                        || ((sql.charAt(i) == '+' || sql.charAt(i) == '-') && (sql.charAt(i - 1) == 'e' || sql.charAt(i - 1) == 'E')))) {
+                    i++;
+                }
+                tokens.add(sql.substring(start, i).toLowerCase(Locale.ROOT));
+            } else if ("+-*/<>=~!@#%^&|`?:".indexOf(c) >= 0) {
+                while (i < n && "+-*/<>=~!@#%^&|`?:".indexOf(sql.charAt(i)) >= 0
+                        && !sql.startsWith("--", i) && !sql.startsWith("/*", i)) {
+                    i++;
+                }
+                if (i == start) {
+                    i++; // A lone '-' or '/' right before a comment
+                }
+                // Like the Postgres lexer: "=-" in "a=-1" is "=" followed by a minus sign
+                while (i - start > 1 && (sql.charAt(i - 1) == '+' || sql.charAt(i - 1) == '-')
+                        && sql.substring(start, i).chars().noneMatch(ch -> "~!@#%^&|`?".indexOf(ch) >= 0)) {
+                    i--;
+                }
+                String operator = sql.substring(start, i);
+                tokens.add(operator.equals("!=") ? "<>" : operator);
+            } else {
+                i++;
+                tokens.add(String.valueOf(c));
+            }
+        }
+        return tokens;
+    }
+
+    /** Index just past the closing quote; a doubled quote is an escaped one. */
+    private static int endOfQuoted(String sql, int open, char quote, boolean backslashEscapes) {
+        int i = open + 1;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if (backslashEscapes && c == '\\') {
+                i += 2;
+            } else if (c == quote) {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                } else {
+                    return i + 1;
+                }
+            } else {
+                i++;
+            }
+        }
+        return sql.length();
+    }
+
+    /** The opening tag of a dollar-quoted string ($$ or $tag$) at i, or null. */
+    private static String dollarTag(String sql, int i) {
+        int j = i + 1;
+        while (j < sql.length() && (Character.isLetterOrDigit(sql.charAt(j)) || sql.charAt(j) == '_')) {
+            j++;
+        }
+        if (j < sql.length() && sql.charAt(j) == '$' && (j == i + 1 || !Character.isDigit(sql.charAt(i + 1)))) {
+            return sql.substring(i, j + 1);
+        }
+        return null;
+    }
+
+    /** Sorts the AND-ed conditions of every WHERE, HAVING and ON, including those of subqueries. */
+    private static List<String> sortConditions(List<String> tokens) {
+        List<String> out = new ArrayList<>(tokens.size());
+        int i = 0;
+        while (i < tokens.size()) {
+            String token = tokens.get(i++);
+            out.add(token);
+            if (token.equals("where") || token.equals("having") || token.equals("on")) {
+                int end = conditionEnd(tokens, i);
+                out.addAll(sortConjuncts(tokens.subList(i, end)));
+                i = end;
+            }
+        }
+        return out;
+    }
+
+    private static int conditionEnd(List<String> tokens, int from) {
+        int depth = 0;
+        for (int i = from; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            if (token.equals("(") || token.equals("case")) {
+                depth++;
+            } else if (token.equals(")") || token.equals("end")) {
+                if (depth == 0) {
+                    return i;
+                }
+                depth--;
+            } else if (depth == 0 && (token.equals(";") || CLAUSE_ENDS.contains(token))) {
+                if (i + 1 < tokens.size() && tokens.get(i + 1).equals("(") && !token.equals("on") && !token.equals("using")) {
+                    continue; // A function such as left(name, 1)
+                }
+                return i;
+            }
+        }
+        return tokens.size();
+    }
+
+    private static List<String> sortConjuncts(List<String> condition) {
+        List<List<String>> conjuncts = new ArrayList<>();
+        int depth = 0;
+        int start = 0;
+        boolean inBetween = false;
+        for (int i = 0; i < condition.size(); i++) {
+            String token = condition.get(i);
+            if (token.equals("(") || token.equals("case")) {
+                depth++;
+            } else if (token.equals(")") || token.equals("end")) {
+                depth--;
+            } else if (depth == 0) {
+                if (token.equals("or")) {
+                    // AND binds tighter than OR, so the top level is not a plain list of conditions
+                    return sortConditions(condition);
+                } else if (token.equals("between")) {
+                    inBetween = true;
+                } else if (token.equals("and")) {
+                    if (inBetween) {
+                        inBetween = false; // x BETWEEN a AND b
+                    } else {
+                        conjuncts.add(sortConditions(condition.subList(start, i)));
+                        start = i + 1;
+                    }
+                }
+            }
+        }
+        conjuncts.add(sortConditions(condition.subList(start, condition.size())));
+        if (conjuncts.size() == 1) {
+            return conjuncts.get(0);
+        }
+        for (List<String> conjunct : conjuncts) {
+            if (conjunct.isEmpty()) {
+                return sortConditions(condition); // Not valid SQL; leave the order alone
+            }
+        }
+
+        conjuncts.sort(Comparator.comparing(c -> String.join(" ", c)));
+        List<String> out = new ArrayList<>(condition.size());
+        for (List<String> conjunct : conjuncts) {
+            if (!out.isEmpty()) {
+                out.add("and");
+            }
+            out.addAll(conjunct);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.bdsqltester.grading;
+
+public class Submission {
+    public long assignmentId;
+    public long userId;
+    public String userQuery;
+    public String answerKey;
+
+    public Submission(long assignmentId, long userId, String userQuery, String answerKey) {
+        this.assignmentId = assignmentId;
+        this.userId = userId;
+        this.userQuery = userQuery;
+        this.answerKey = answerKey;
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.bdsqltester.grading;
+
+public enum SubmissionState {
+    QUEUED,   // Waiting for a free grading slot
+    RUNNING,  // Queries are executing
+    FINISHED, // Graded and saved
+    FAILED    // Grading could not complete
+}
@@ -0,0 +1,102 @@
+package com.example.bdsqltester.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with fixed buckets.
+ * Percentiles are reported as the upper bound of the bucket they fall in, which is precise enough
+ * to tell a 5 ms query from a 500 ms one.
+ */
+public class LatencyHistogram implements LatencyHistogramMXBean {
+
+    // Upper bounds in milliseconds; the last bucket catches everything slower
+    static final double[] BOUNDS_MS = {1, 2.5, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000};
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BOUNDS_MS.length + 1);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumNanos = new LongAdder();
+
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void recordNanos(long nanos) {
+        double millis = nanos / 1_000_000.0;
+        int bucket = 0;
+        while (bucket < BOUNDS_MS.length && millis > BOUNDS_MS[bucket]) {
+            bucket++;
+        }
+        counts.incrementAndGet(bucket);
+        count.increment();
+        sumNanos.add(nanos);
+    }
+
+    /** Records the time elapsed since {@code startNanos}, taken from {@link System#nanoTime()}. */
+    public void recordSince(long startNanos) {
+        recordNanos(System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public double getMeanMillis() {
+        long n = count.sum();
+        return n == 0 ? 0 : sumNanos.sum() / 1_000_000.0 / n;
+    }
+
+    @Override
+    public double getP50Millis() {
+        return percentileMillis(0.50);
+    }
+
+    @Override
+    public double getP95Millis() {
+        return percentileMillis(0.95);
+    }
+
+    @Override
+    public double getP99Millis() {
+        return percentileMillis(0.99);
+    }
+
+    public double percentileMillis(double quantile) {
+        long total = 0;
+        long[] snapshot = snapshot();
+        for (long c : snapshot) {
+            total += c;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return i < BOUNDS_MS.length ? BOUNDS_MS[i] : Double.POSITIVE_INFINITY;
+            }
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    long[] snapshot() {
+        long[] snapshot = new long[counts.length()];
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = counts.get(i);
+        }
+        return snapshot;
+    }
+
+    double getSumSeconds() {
+        return sumNanos.sum() / 1_000_000_000.0;
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.bdsqltester.metrics;
+
+/**
+ * JMX view of a {@link LatencyHistogram}.
+ */
+public interface LatencyHistogramMXBean {
+    long getCount();
+
+    double getMeanMillis();
+
+    double getP50Millis();
+
+    double getP95Millis();
+
+    double getP99Millis();
+}
@@ -0,0 +1,131 @@
+package com.example.bdsqltester.metrics;
+
+import com.example.bdsqltester.grading.AdmissionController;
+import com.example.bdsqltester.grading.GradingExecutor;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Process-wide registry of pool statistics and latency histograms.
+ * Every histogram is registered as an MXBean under {@code com.example.bdsqltester}; HikariCP registers
+ * its own pool MBeans ({@code com.zaxxer.hikari:type=Pool (...)}) next to them.
+ * {@link #writePrometheus(PrintWriter)} renders everything in the Prometheus text format.
+ */
+public class Metrics {
+
+    private static final Map<String, PoolStats> pools = new ConcurrentSkipListMap<>();
+    private static final Map<String, LatencyHistogram> poolAcquire = new ConcurrentSkipListMap<>();
+    private static final Map<String, LatencyHistogram> gradingStages = new ConcurrentSkipListMap<>();
+    private static final Map<String, Boolean> registeredBeans = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    static void registerPool(String poolName, PoolStats stats) {
+        pools.put(poolName, stats);
+    }
+
+    static LatencyHistogram poolAcquire(String poolName) {
+        return poolAcquire.computeIfAbsent(poolName, n -> register("PoolAcquire", new LatencyHistogram(n)));
+    }
+
+    /** Latency of one grading stage, e.g. "queue", "execute" or "save". */
+    public static LatencyHistogram stage(String stage) {
+        return gradingStages.computeIfAbsent(stage, n -> register("GradingStage", new LatencyHistogram(n)));
+    }
+
+    public static Map<String, PoolStats> getPools() {
+        return pools;
+    }
+
+    private static LatencyHistogram register(String type, LatencyHistogram histogram) {
+        try {
+            ObjectName objectName = new ObjectName("com.example.bdsqltester:type=" + type + ",name=" + ObjectName.quote(histogram.getName()));
+            if (registeredBeans.putIfAbsent(objectName.toString(), Boolean.TRUE) == null) {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                server.registerMBean(histogram, objectName);
+            }
+        } catch (Exception e) {
+            // Metrics must never break grading
+            e.printStackTrace();
+        }
+        return histogram;
+    }
+
+    public static void writePrometheus(PrintWriter out) {
+        out.println("# HELP bdsqltester_pool_connections Connections of a HikariCP pool by state.");
+        out.println("# TYPE bdsqltester_pool_connections gauge");
+        for (Map.Entry<String, PoolStats> pool : pools.entrySet()) {
+            PoolStats stats = pool.getValue();
+            String name = pool.getKey();
+            gauge(out, "bdsqltester_pool_connections", "pool=\"" + name + "\",state=\"active\"", stats.getActiveConnections());
+            gauge(out, "bdsqltester_pool_connections", "pool=\"" + name + "\",state=\"idle\"", stats.getIdleConnections());
+            gauge(out, "bdsqltester_pool_connections", "pool=\"" + name + "\",state=\"pending\"", stats.getPendingThreads());
+            gauge(out, "bdsqltester_pool_connections", "pool=\"" + name + "\",state=\"total\"", stats.getTotalConnections());
+            gauge(out, "bdsqltester_pool_connections", "pool=\"" + name + "\",state=\"max\"", stats.getMaxConnections());
+        }
+
+        writeHistograms(out, "bdsqltester_pool_acquire_seconds", "Time to acquire a pooled connection.", "pool", poolAcquire);
+        writeHistograms(out, "bdsqltester_grading_stage_seconds", "Time spent per grading stage.", "stage", gradingStages);
+
+        AdmissionController admission = GradingExecutor.getAdmission();
+        out.println("# HELP bdsqltester_grading_admission Grading work by admission state.");
+        out.println("# TYPE bdsqltester_grading_admission gauge");
+        gauge(out, "bdsqltester_grading_admission", "state=\"running\"", admission.getRunning());
+        gauge(out, "bdsqltester_grading_admission", "state=\"queued\"", admission.getQueued());
+        out.println("# HELP bdsqltester_grading_rejected_total Grading work turned away because the queue was full.");
+        out.println("# TYPE bdsqltester_grading_rejected_total counter");
+        out.println("bdsqltester_grading_rejected_total " + admission.getRejected());
+
+        out.println("# HELP bdsqltester_startup_phase_seconds Time from JVM start until a startup phase was reached.");
+        out.println("# TYPE bdsqltester_startup_phase_seconds gauge");
+        for (Map.Entry<String, Long> phase : StartupTimings.getPhases().entrySet()) {
+            out.println("bdsqltester_startup_phase_seconds{phase=\"" + phase.getKey() + "\"} " + seconds(phase.getValue()));
+        }
+        out.flush();
+    }
+
+    private static void writeHistograms(PrintWriter out, String metric, String help, String label,
+                                        Map<String, LatencyHistogram> family) {
+        out.println("# HELP " + metric + " " + help);
+        out.println("# TYPE " + metric + " histogram");
+        for (LatencyHistogram histogram : family.values()) {
+            String labels = label + "=\"" + histogram.getName() + "\"";
+            long[] counts = histogram.snapshot();
+            long cumulative = 0;
+            for (int i = 0; i < counts.length; i++) {
+                cumulative += counts[i];
+                String le = i < LatencyHistogram.BOUNDS_MS.length ? seconds(LatencyHistogram.BOUNDS_MS[i]) : "+Inf";
+                out.println(metric + "_bucket{" + labels + ",le=\"" + le + "\"} " + cumulative);
+            }
+            out.println(metric + "_sum{" + labels + "} " + histogram.getSumSeconds());
+            out.println(metric + "_count{" + labels + "} " + cumulative);
+        }
+
+        // Pre-computed percentiles, for dashboards that do not run histogram_quantile()
+        String quantiles = metric.replace("_seconds", "_quantile_seconds");
+        out.println("# TYPE " + quantiles + " gauge");
+        for (LatencyHistogram histogram : family.values()) {
+            String labels = label + "=\"" + histogram.getName() + "\"";
+            for (double q : new double[]{0.5, 0.95, 0.99}) {
+                out.println(quantiles + "{" + labels + ",quantile=\"" + q + "\"} " + seconds(histogram.percentileMillis(q)));
+            }
+        }
+    }
+
+    private static void gauge(PrintWriter out, String metric, String labels, int value) {
+        out.println(metric + "{" + labels + "} " + value);
+    }
+
+    private static String seconds(double millis) {
+        return Double.isInfinite(millis) ? "+Inf" : String.format(Locale.ROOT, "%.4f", millis / 1000);
+    }
+}
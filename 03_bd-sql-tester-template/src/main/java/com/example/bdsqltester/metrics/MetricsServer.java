@@ -0,0 +1,57 @@
+package com.example.bdsqltester.metrics;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves {@link Metrics} on {@code http://127.0.0.1:<port>/metrics} for Prometheus or curl.
+ * Off unless a port is given, e.g. {@code -Dmetrics.port=9464}, so clients don't open a port nobody scrapes.
+ */
+public class MetricsServer {
+
+    private static HttpServer server;
+
+    private MetricsServer() {
+    }
+
+    public static synchronized void start() {
+        Integer port = Integer.getInteger("metrics.port");
+        if (server != null || port == null || port < 0) {
+            return;
+        }
+        try {
+            // Bound to loopback only, the endpoint is for the machine running the client
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+            server.createContext("/metrics", exchange -> {
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                Metrics.writePrometheus(new PrintWriter(body, false, StandardCharsets.UTF_8));
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.size());
+                try (OutputStream out = exchange.getResponseBody()) {
+                    body.writeTo(out);
+                }
+            });
+            server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+            server.start();
+        } catch (IOException e) {
+            // Another client on the same machine may already use the port; metrics are optional
+            System.err.println("Metrics endpoint not started on port " + port + ": " + e.getMessage());
+            server = null;
+        }
+    }
+
+    public static synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+    }
+}
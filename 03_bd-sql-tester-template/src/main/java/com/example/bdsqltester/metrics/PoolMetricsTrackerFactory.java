@@ -0,0 +1,24 @@
+package com.example.bdsqltester.metrics;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+/**
+ * Hooks a HikariCP pool into {@link Metrics}: records connection acquire times and keeps the
+ * pool's live statistics (active, idle, pending) available for export.
+ */
+public class PoolMetricsTrackerFactory implements MetricsTrackerFactory {
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        Metrics.registerPool(poolName, poolStats);
+        LatencyHistogram acquire = Metrics.poolAcquire(poolName);
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                acquire.recordNanos(elapsedAcquiredNanos);
+            }
+        };
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.bdsqltester.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Milliseconds from JVM start to each startup phase, e.g. "first-frame".
+ * Every phase is logged once when it is reached and exported as {@code bdsqltester_startup_phase_seconds}.
+ */
+public class StartupTimings {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupTimings.class);
+    private static final long JVM_START_MS = ManagementFactory.getRuntimeMXBean().getStartTime();
+
+    // In the order the phases were reached
+    private static final Map<String, Long> phases = new LinkedHashMap<>();
+
+    private StartupTimings() {
+    }
+
+    /** Records the phase; later calls for the same phase are ignored. */
+    public static void mark(String phase) {
+        long millis = System.currentTimeMillis() - JVM_START_MS;
+        synchronized (phases) {
+            if (phases.putIfAbsent(phase, millis) != null) {
+                return;
+            }
+        }
+        log.info("Startup: {} after {} ms", phase, millis);
+    }
+
+    public static Map<String, Long> getPhases() {
+        synchronized (phases) {
+            return new LinkedHashMap<>(phases);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.bdsqltester.scenes;
+
+import com.example.bdsqltester.datasources.ChangeFeed;
+import com.example.bdsqltester.datasources.MainDataSource;
+import com.example.bdsqltester.dtos.Assignment;
+import com.example.bdsqltester.dtos.AssignmentCache;
+import com.example.bdsqltester.dtos.AssignmentSnapshot;
+import javafx.application.Platform;
+import javafx.collections.ObservableList;
+import javafx.scene.Scene;
+import javafx.scene.control.ListView;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps an assignment list current by applying the inserts, updates and deletes other clients make
+ * (pushed through the {@code assignment_changes} channel, see {@code db/04_assignment_changes.sql}),
+ * instead of reloading the whole table. The list stays sorted by id.
+ * List entries only carry id and name; open an assignment through {@link AssignmentCache}.
+ */
+public class AssignmentListSync implements ChangeFeed.Listener {
+
+    public static final String CHANNEL = "assignment_changes";
+
+    private final ObservableList<Assignment> assignments;
+    private final Runnable afterChange;
+    // One at a time, so changes reach the list in the order they were made; a new one each time the view is shown
+    private volatile ExecutorService updates;
+    private AutoCloseable subscription; // JavaFX thread only
+    // The snapshot on screen, if any; checked against the server once the feed listens
+    private volatile AssignmentSnapshot shownSnapshot;
+
+    private AssignmentListSync(ObservableList<Assignment> assignments, Runnable afterChange) {
+        this.assignments = assignments;
+        this.afterChange = afterChange;
+    }
+
+    /**
+     * Each time the view is shown in a window, fills the list (see {@link #showSnapshot()}) and follows changes
+     * until the window closes or switches to another scene. Nothing happens before that, so a view can be
+     * loaded ahead of time (see {@link ScenePreloader}) without touching the database.
+     * afterChange runs on the JavaFX thread after every applied change, e.g. to refresh the selection.
+     */
+    public static AssignmentListSync bind(ListView<Assignment> view, ObservableList<Assignment> assignments, Runnable afterChange) {
+        AssignmentListSync sync = new AssignmentListSync(assignments, afterChange);
+        view.sceneProperty().flatMap(Scene::windowProperty).addListener((obs, oldWindow, window) -> {
+            if (window != null && sync.subscription == null) {
+                sync.updates = Executors.newSingleThreadExecutor(Thread.ofVirtual().factory());
+                sync.showSnapshot();
+                sync.subscription = ChangeFeed.subscribe(CHANNEL, sync);
+            } else if (oldWindow != null && window == null && sync.subscription != null) {
+                try {
+                    sync.subscription.close();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+                sync.subscription = null;
+                sync.updates.shutdown();
+            }
+        });
+        return sync;
+    }
+
+    /** Id and name of every assignment; instructions and answer keys are left out. */
+    public static List<Assignment> loadAll() throws SQLException {
+        List<Assignment> result = new ArrayList<>();
+        try (Connection c = MainDataSource.getConnection();
+             PreparedStatement stmt = c.prepareStatement("SELECT id, name FROM assignments ORDER BY id");
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                result.add(new Assignment(rs.getLong("id"), rs.getString("name"), null, null));
+            }
+        }
+        return result;
+    }
+
+    /** Shows the list from the on-disk snapshot right away, before anything is asked of the server. JavaFX thread only. */
+    private void showSnapshot() {
+        AssignmentSnapshot snapshot = AssignmentSnapshot.read();
+        shownSnapshot = snapshot;
+        if (snapshot != null) {
+            assignments.setAll(snapshot.assignments);
+            afterChange.run();
+        }
+    }
+
+    /**
+     * Asks the server for the catalog version and only fetches the list when it differs from the snapshot shown.
+     * This waits until the channel is LISTENed on, so a change committed while the view was being shown is either
+     * in the fetched list or arrives as a notification. The check runs on the update thread, so it stays ordered
+     * with notifications that arrive meanwhile.
+     */
+    @Override
+    public void onListening() {
+        AssignmentSnapshot snapshot = shownSnapshot;
+        updates.execute(() -> {
+            try {
+                if (snapshot != null && snapshot.version == AssignmentSnapshot.serverVersion()) {
+                    return;
+                }
+            } catch (SQLException e) {
+                e.printStackTrace(); // Can't tell, so fetch the list
+            }
+            try {
+                showFresh();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    // Update thread only
+    private void showFresh() throws SQLException {
+        List<Assignment> all;
+        try {
+            AssignmentSnapshot fresh = AssignmentSnapshot.load();
+            all = fresh.assignments;
+            try {
+                fresh.write();
+            } catch (IOException e) {
+                e.printStackTrace(); // Only the next start gets slower
+            }
+        } catch (SQLException e) {
+            if (!"42P01".equals(e.getSQLState())) { // undefined_table: db/06 not applied yet
+                throw e;
+            }
+            all = loadAll();
+        }
+        List<Assignment> shown = all;
+        Platform.runLater(() -> {
+            assignments.setAll(shown);
+            afterChange.run();
+        });
+    }
+
+    @Override
+    public void onNotification(String payload) {
+        int colon = payload.indexOf(':');
+        String op = payload.substring(0, colon);
+        long id = Long.parseLong(payload.substring(colon + 1));
+
+        // Fetch off the feed thread so one slow query doesn't hold up other notifications
+        updates.execute(() -> {
+            AssignmentCache.invalidate(id);
+            try {
+                Assignment assignment = op.equals("DELETE") ? null : load(id);
+                Platform.runLater(() -> {
+                    if (assignment != null) {
+                        put(assignment);
+                    } else {
+                        remove(id); // Also when it was deleted again before we got to it
+                    }
+                });
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    @Override
+    public void onResync() {
+        updates.execute(() -> {
+            AssignmentCache.clear();
+            try {
+                showFresh();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /** Adds or replaces the assignment with the same id. JavaFX thread only. */
+    public void put(Assignment assignment) {
+        int index = indexOf(assignment.id);
+        if (index >= 0) {
+            assignments.set(index, assignment);
+        } else {
+            assignments.add(-index - 1, assignment);
+        }
+        afterChange.run();
+    }
+
+    /** JavaFX thread only. */
+    public void remove(long id) {
+        int index = indexOf(id);
+        if (index >= 0) {
+            assignments.remove(index);
+            afterChange.run();
+        }
+    }
+
+    // Binary search by id; returns -(insertion point) - 1 if absent
+    private int indexOf(long id) {
+        int low = 0;
+        int high = assignments.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midId = assignments.get(mid).id;
+            if (midId < id) {
+                low = mid + 1;
+            } else if (midId > id) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private static Assignment load(long id) throws SQLException {
+        try (Connection c = MainDataSource.getConnection();
+             PreparedStatement stmt = c.prepareStatement("SELECT id, name FROM assignments WHERE id = ?")) {
+            stmt.setLong(1, id);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? new Assignment(rs.getLong("id"), rs.getString("name"), null, null) : null;
+            }
+        }
+    }
+}
@@ -1,11 +1,15 @@
 package com.example.bdsqltester.scenes;
 
 import com.example.bdsqltester.HelloApplication;
-import com.example.bdsqltester.datasources.MainDataSource;
+import com.example.bdsqltester.auth.Authenticator;
+import com.example.bdsqltester.auth.Session;
+import com.example.bdsqltester.grading.GradingExecutor;
 import com.example.bdsqltester.scenes.user.UserController;
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
+import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.scene.control.ChoiceBox;
@@ -13,7 +17,6 @@ import javafx.scene.control.TextField;
 import javafx.scene.Parent;
 
 import java.io.IOException;
-import java.sql.*;
 
 public class LoginController {
 
@@ -26,48 +29,6 @@ public class LoginController {
     @FXML
     private TextField usernameField;
 
-    private int getUserIdByUsername(String username) throws SQLException {
-        try (Connection c = MainDataSource.getConnection()) {
-            PreparedStatement stmt = c.prepareStatement("SELECT id FROM users WHERE username = ?");
-            stmt.setString(1, username);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                return rs.getInt("id");
-            }
-        }
-        return -1;
-    }
-
-
-    boolean verifyCredentials(String username, String password, String role) throws SQLException {
-        // Call the database to verify the credentials
-        // This is insecure as this stores the password in plain text.
-        // In a real application, you should hash the password and store it securely.
-
-        // Get a connection to the database
-        try (Connection c = MainDataSource.getConnection()) {
-            // Create a prepared statement to prevent SQL injection
-            PreparedStatement stmt = c.prepareStatement("SELECT * FROM users WHERE username = ? AND role = ?");
-            stmt.setString(1, username);
-            stmt.setString(2, role.toLowerCase());
-
-            // Execute the query
-            ResultSet rs = stmt.executeQuery();
-
-            if (rs.next()) {
-                // User found, check the password
-                String dbPassword = rs.getString("password");
-
-                if (dbPassword.equals(password)) {
-                    return true; // Credentials are valid
-                }
-            }
-        }
-
-        // If we reach here, the credentials are invalid
-        return false;
-    }
-
     @FXML
     void initialize() {
         selectRole.getItems().addAll("Admin", "User");
@@ -81,67 +42,65 @@ public class LoginController {
         String password = passwordField.getText();
         String role = selectRole.getValue();
 
-        // Verify the credentials
-        try {
-            if (verifyCredentials(username, password, role)) {
-                HelloApplication app = HelloApplication.getApplicationInstance();
-
-                // Load the correct view based on the role
-                if (role.equals("Admin")) {
-                    // Load the admin view
-                    app.getPrimaryStage().setTitle("Admin View");
-
-                    // Load fxml and set the scene
-                    FXMLLoader loader = new FXMLLoader(HelloApplication.class.getResource("admin-view.fxml"));
-                    Scene scene = new Scene(loader.load());
-                    app.getPrimaryStage().setScene(scene);
-                } else {
-                    int userId = getUserIdByUsername(username);
-                    if (userId == -1) {
+        // Verify the credentials; one query returns the user's id, role and password hash.
+        // Checking the hash takes a noticeable moment, so it runs off the JavaFX thread
+        Node button = (Node) event.getSource();
+        button.setDisable(true);
+        GradingExecutor.supply(() -> Authenticator.login(username, password, role))
+                .whenComplete((session, error) -> Platform.runLater(() -> {
+                    button.setDisable(false);
+                    if (error != null) {
+                        error.printStackTrace();
                         Alert alert = new Alert(Alert.AlertType.ERROR);
-                        alert.setTitle("Login Error");
-                        alert.setHeaderText("User Not Found");
-                        alert.setContentText("Cannot find user ID in database.");
+                        alert.setTitle("Database Error");
+                        alert.setHeaderText("Database Connection Failed");
+                        alert.setContentText("Could not connect to the database. Please try again later.");
+                        alert.showAndWait();
+                    } else if (session != null) {
+                        showView(role, session);
+                    } else {
+                        // Show an error message
+                        Alert alert = new Alert(Alert.AlertType.ERROR);
+                        alert.setTitle("Login Failed");
+                        alert.setHeaderText("Invalid Credentials");
+                        alert.setContentText("Please check your username and password.");
                         alert.showAndWait();
-                        return;
-                    }
-
-                    // Load the user view
-                    app.getPrimaryStage().setTitle("User View");
-
-                    try {
-                        FXMLLoader loader = new FXMLLoader(HelloApplication.class.getResource("user-view.fxml"));
-                        Parent root = loader.load();
-
-                        UserController userController = loader.getController();
-                        userController.setUserId(userId);
-
-                        Scene scene = new Scene(root);
-                        app.getPrimaryStage().setScene(scene);
-                    } catch (Exception e) {
-                        e.printStackTrace();
                     }
+                }));
+    }
 
+    private void showView(String role, Session session) {
+        HelloApplication app = HelloApplication.getApplicationInstance();
+
+        // Load the correct view based on the role
+        if (role.equals("Admin")) {
+            // Load the admin view
+            app.getPrimaryStage().setTitle("Admin View");
+
+            try {
+                // Usually loaded in the background already (see ScenePreloader)
+                FXMLLoader loader = ScenePreloader.take("admin-view.fxml");
+                Scene scene = new Scene(loader.getRoot());
+                app.getPrimaryStage().setScene(scene);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        } else {
+            // Load the user view
+            app.getPrimaryStage().setTitle("User View");
 
+            try {
+                FXMLLoader loader = ScenePreloader.take("user-view.fxml");
+                Parent root = loader.getRoot();
 
-                }
+                UserController userController = loader.getController();
+                userController.setUserId(session.userId);
 
-            } else {
-                // Show an error message
-                Alert alert = new Alert(Alert.AlertType.ERROR);
-                alert.setTitle("Login Failed");
-                alert.setHeaderText("Invalid Credentials");
-                alert.setContentText("Please check your username and password.");
-                alert.showAndWait();
+                Scene scene = new Scene(root);
+                app.getPrimaryStage().setScene(scene);
+            } catch (Exception e) {
+                e.printStackTrace();
             }
-        } catch (SQLException e) {
-            Alert alert = new Alert(Alert.AlertType.ERROR);
-            alert.setTitle("Database Error");
-            alert.setHeaderText("Database Connection Failed");
-            alert.setContentText("Could not connect to the database. Please try again later.");
-            alert.showAndWait();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
         }
     }
 
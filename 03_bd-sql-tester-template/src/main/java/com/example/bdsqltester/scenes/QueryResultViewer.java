@@ -0,0 +1,285 @@
+package com.example.bdsqltester.scenes;
+
+import com.example.bdsqltester.datasources.GradingDataSource;
+import com.example.bdsqltester.grading.AdmissionRejectedException;
+import com.example.bdsqltester.grading.ExecutionLimits;
+import com.example.bdsqltester.grading.GradingExecutor;
+import com.example.bdsqltester.grading.ResultBudget;
+import com.example.bdsqltester.grading.ResultLimitExceededException;
+import javafx.application.Platform;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.*;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.stage.Stage;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Shows the result of a test query in a window without loading it all into memory.
+ * Rows are read through a server-side cursor, one page at a time, and the next page is only
+ * fetched when the user scrolls close to the end of the table. The query can be cancelled.
+ * The query runs under the given {@link ExecutionLimits}; reading stops once the row or byte budget is used up.
+ * Testing never keeps changes: the transaction is rolled back when the window closes.
+ * A student's query waits for its turn in {@link GradingExecutor} and holds a grading slot while the window is open.
+ */
+public class QueryResultViewer {
+
+    private static final int PAGE_SIZE = 200;
+    // Start fetching the next page when this many rows are left below the visible ones
+    private static final int PREFETCH_ROWS = 50;
+
+    private final String query;
+    private final ExecutionLimits limits;
+    private final long userId; // -1 for staff
+    private final Stage stage = new Stage();
+    private final TableView<String[]> tableView = new TableView<>();
+    private final ObservableList<String[]> rows = FXCollections.observableArrayList();
+    private final Label statusLabel = new Label("Running query...");
+    private final Button cancelButton = new Button("Cancel");
+
+    // Released by the JavaFX thread whenever the reader may fetch another page
+    private final Semaphore pageRequests = new Semaphore(0);
+    private volatile Statement statement;
+    private volatile boolean stopped;
+
+    // JavaFX thread only
+    private boolean pageRequested;
+    private boolean complete;
+
+    private QueryResultViewer(String title, String query, ExecutionLimits limits, long userId) {
+        this.query = query;
+        this.limits = limits;
+        this.userId = userId;
+        stage.setTitle(title);
+    }
+
+    /** Runs a staff query. */
+    public static void show(String title, String query, ExecutionLimits limits) {
+        new QueryResultViewer(title, query, limits, -1).start();
+    }
+
+    /** Runs a student's query in their grading lane. */
+    public static void show(String title, String query, ExecutionLimits limits, long userId) {
+        new QueryResultViewer(title, query, limits, userId).start();
+    }
+
+    private void start() {
+        tableView.setItems(rows);
+        tableView.setPlaceholder(new Label("Waiting for the first rows..."));
+        tableView.setRowFactory(tv -> new TableRow<>() {
+            @Override
+            public void updateIndex(int index) {
+                super.updateIndex(index);
+                if (index >= 0 && index >= rows.size() - PREFETCH_ROWS) {
+                    requestNextPage();
+                }
+            }
+        });
+
+        cancelButton.setOnAction(e -> cancel());
+        HBox spacer = new HBox();
+        HBox.setHgrow(spacer, Priority.ALWAYS);
+        HBox bottom = new HBox(8, statusLabel, spacer, cancelButton);
+        bottom.setAlignment(Pos.CENTER_LEFT);
+        bottom.setPadding(new Insets(8));
+
+        BorderPane root = new BorderPane(tableView);
+        root.setBottom(bottom);
+        stage.setScene(new Scene(root, 800, 600));
+        stage.setOnHidden(e -> cancel()); // Frees the cursor and its pooled connection
+        stage.show();
+
+        statusLabel.setText("Waiting for a free grading slot...");
+        CompletableFuture<Void> run = userId < 0
+                ? GradingExecutor.supplyInSlot(this::readResults)
+                : GradingExecutor.supplyForUser(userId, this::readResults);
+        run.whenComplete((ignored, error) -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof AdmissionRejectedException) {
+                Platform.runLater(() -> reject(cause.getMessage()));
+            }
+        });
+    }
+
+    private Void readResults() {
+        if (stopped) {
+            return null; // Closed while waiting for its turn
+        }
+        Platform.runLater(() -> {
+            if (!complete) {
+                statusLabel.setText("Running query...");
+            }
+        });
+        try (Connection conn = GradingDataSource.getConnection()) {
+            ExecutionLimits.requireSingleStatement(query);
+            // Also turns auto-commit off, which the driver needs to fetch through a cursor
+            limits.apply(conn);
+            try (Statement stmt = conn.createStatement()) {
+                statement = stmt;
+                if (stopped) {
+                    return null;
+                }
+                stmt.setFetchSize(PAGE_SIZE);
+
+                if (!stmt.execute(query)) {
+                    int updateCount = stmt.getUpdateCount();
+                    Platform.runLater(() -> finish("The command executed successfully. Rows affected: " + updateCount
+                            + ". Changes are not kept."));
+                    return null;
+                }
+
+                try (ResultSet rs = stmt.getResultSet()) {
+                    ResultSetMetaData metaData = rs.getMetaData();
+                    int columnCount = metaData.getColumnCount();
+                    String[] headers = new String[columnCount];
+                    for (int i = 1; i <= columnCount; i++) {
+                        headers[i - 1] = metaData.getColumnLabel(i);
+                    }
+                    Platform.runLater(() -> createColumns(headers));
+
+                    ResultBudget budget = limits.newBudget();
+                    long loaded = 0;
+                    while (!stopped) {
+                        List<String[]> page = new ArrayList<>(PAGE_SIZE);
+                        while (page.size() < PAGE_SIZE && rs.next()) {
+                            String[] row = new String[columnCount];
+                            for (int i = 1; i <= columnCount; i++) {
+                                String value = rs.getString(i);
+                                row[i - 1] = value != null ? value : "";
+                            }
+                            try {
+                                budget.charge(row);
+                            } catch (ResultLimitExceededException e) {
+                                long shown = loaded + page.size();
+                                Platform.runLater(() -> {
+                                    appendPage(page, shown, true);
+                                    finish("Stopped after " + shown + " rows: " + e.getMessage());
+                                });
+                                return null;
+                            }
+                            page.add(row);
+                        }
+                        loaded += page.size();
+                        boolean last = page.size() < PAGE_SIZE;
+                        long loadedSoFar = loaded;
+                        Platform.runLater(() -> appendPage(page, loadedSoFar, last));
+                        if (last) {
+                            break;
+                        }
+                        pageRequests.acquire(); // Wait until the user scrolls near the end
+                    }
+                }
+            } finally {
+                statement = null;
+                conn.rollback(); // Testing never keeps changes made by the query
+                conn.setAutoCommit(true); // Reset auto-commit behavior (important if connection is pooled)
+            }
+        } catch (SQLException e) {
+            Platform.runLater(() -> fail(e));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    private void createColumns(String[] headers) {
+        for (int i = 0; i < headers.length; i++) {
+            final int columnIndex = i;
+            TableColumn<String[], String> column = new TableColumn<>(headers[i]);
+            column.setCellValueFactory(cellData -> {
+                String[] rowData = cellData.getValue();
+                return new SimpleStringProperty(rowData != null && columnIndex < rowData.length ? rowData[columnIndex] : "");
+            });
+            column.setPrefWidth(120);
+            tableView.getColumns().add(column);
+        }
+    }
+
+    private void appendPage(List<String[]> page, long loaded, boolean last) {
+        rows.addAll(page);
+        pageRequested = false;
+        if (complete) {
+            return; // Cancelled while this page was on its way
+        }
+        if (last) {
+            finish(loaded == 0
+                    ? "The query executed successfully and returned columns, but no data rows."
+                    : "All " + loaded + " rows loaded.");
+        } else {
+            statusLabel.setText(loaded + " rows loaded, scroll down for more.");
+        }
+    }
+
+    private void requestNextPage() {
+        if (!pageRequested && !complete && !stopped) {
+            pageRequested = true;
+            pageRequests.release();
+        }
+    }
+
+    private void finish(String status) {
+        complete = true;
+        statusLabel.setText(status);
+        tableView.setPlaceholder(new Label(""));
+        cancelButton.setDisable(true);
+    }
+
+    private void fail(SQLException e) {
+        if (stopped) {
+            finish("Query cancelled after " + rows.size() + " rows.");
+            return;
+        }
+        finish("Query failed.");
+        e.printStackTrace();
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setTitle("Database Error");
+        alert.setHeaderText("Failed to execute query or retrieve results.");
+        alert.setContentText("SQL Error: " + e.getMessage());
+        alert.showAndWait();
+        if (rows.isEmpty()) {
+            stage.close();
+        }
+    }
+
+    // Turned away before it ran: nothing to show, so the window goes away with the alert
+    private void reject(String message) {
+        finish("Not run.");
+        stage.close();
+        Alert alert = new Alert(Alert.AlertType.WARNING);
+        alert.setTitle("Grading Busy");
+        alert.setHeaderText("Your query was not run.");
+        alert.setContentText(message);
+        alert.showAndWait();
+    }
+
+    private void cancel() {
+        if (stopped) {
+            return;
+        }
+        stopped = true;
+        pageRequests.release(); // Wake the reader if it waits for the next page request
+        Statement stmt = statement;
+        if (stmt != null) {
+            try {
+                stmt.cancel();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+        if (!complete) {
+            finish("Query cancelled after " + rows.size() + " rows.");
+        }
+    }
+}
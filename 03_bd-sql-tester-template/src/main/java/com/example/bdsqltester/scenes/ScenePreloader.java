@@ -0,0 +1,65 @@
+package com.example.bdsqltester.scenes;
+
+import com.example.bdsqltester.HelloApplication;
+import com.example.bdsqltester.metrics.StartupTimings;
+import javafx.fxml.FXMLLoader;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Loads FXML views in the background while the login screen is up, so switching to them after login
+ * does not wait for FXML parsing, class loading and controller setup.
+ * Nodes may be built off the JavaFX thread as long as they are not shown yet; the controllers only start
+ * talking to the database once their view is in a window (see {@link AssignmentListSync#bind}).
+ */
+public class ScenePreloader {
+
+    private static final Map<String, CompletableFuture<FXMLLoader>> loaded = new ConcurrentHashMap<>();
+
+    private ScenePreloader() {
+    }
+
+    /** Starts loading the views, e.g. {@code "user-view.fxml"}, on a virtual thread each. */
+    public static void preload(String... views) {
+        for (String view : views) {
+            loaded.computeIfAbsent(view, v -> {
+                CompletableFuture<FXMLLoader> future = new CompletableFuture<>();
+                Thread.ofVirtual().name("preload-" + v).start(() -> {
+                    try {
+                        future.complete(load(v));
+                        StartupTimings.mark("preloaded " + v);
+                    } catch (IOException | RuntimeException e) {
+                        future.completeExceptionally(e);
+                    }
+                });
+                return future;
+            });
+        }
+    }
+
+    /**
+     * A loaded view, with its controller. A preloaded one is handed out once; otherwise, or if preloading failed,
+     * the view is loaded now (so a broken view still reports its error here).
+     */
+    public static FXMLLoader take(String view) throws IOException {
+        CompletableFuture<FXMLLoader> preloaded = loaded.remove(view);
+        if (preloaded != null) {
+            try {
+                return preloaded.join();
+            } catch (CompletionException e) {
+                e.printStackTrace();
+            }
+        }
+        return load(view);
+    }
+
+    private static FXMLLoader load(String view) throws IOException {
+        FXMLLoader loader = new FXMLLoader(HelloApplication.class.getResource(view));
+        loader.load();
+        return loader;
+    }
+}
@@ -1,20 +1,26 @@
 package com.example.bdsqltester.scenes.admin;
 
+import com.example.bdsqltester.datasources.BulkCopy;
 import com.example.bdsqltester.datasources.GradingDataSource;
 import com.example.bdsqltester.datasources.MainDataSource;
 import com.example.bdsqltester.dtos.Assignment;
-import javafx.beans.property.SimpleStringProperty;
+import com.example.bdsqltester.dtos.AssignmentCache;
+import com.example.bdsqltester.grading.ExecutionLimits;
+import com.example.bdsqltester.grading.GradingExecutor;
+import com.example.bdsqltester.grading.Regrader;
+import com.example.bdsqltester.scenes.AssignmentListSync;
+import com.example.bdsqltester.scenes.QueryResultViewer;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
-import javafx.scene.Scene;
 import javafx.scene.control.*;
-import javafx.scene.layout.StackPane;
-import javafx.stage.Stage;
+import javafx.stage.FileChooser;
 
+import java.io.File;
 import java.sql.*;
-import java.util.ArrayList;
+import java.util.Optional;
 
 public class AdminController {
 
@@ -34,6 +40,7 @@ public class AdminController {
     private TextField nameField;
 
     private final ObservableList<Assignment> assignments = FXCollections.observableArrayList();
+    private AssignmentListSync assignmentSync;
 
     @FXML
     void initialize() {
@@ -42,8 +49,9 @@ public class AdminController {
         idField.setMouseTransparent(true);
         idField.setFocusTraversable(false);
 
-        // Populate the ListView with assignment names
-        refreshAssignmentList();
+        // Populated with assignment names once the view is shown, then kept current with changes from other clients
+        assignmentList.setItems(assignments);
+        assignmentSync = AssignmentListSync.bind(assignmentList, assignments, this::restoreSelection);
 
         assignmentList.setCellFactory(param -> new ListCell<Assignment>() {
             @Override
@@ -68,25 +76,25 @@ public class AdminController {
     }
 
     void refreshAssignmentList() {
-        assignments.clear();
-        try (Connection c = MainDataSource.getConnection();
-             Statement stmt = c.createStatement();
-             ResultSet rs = stmt.executeQuery("SELECT * FROM assignments")) {
-
-            while (rs.next()) {
-                assignments.add(new Assignment(rs));
-            }
-        } catch (SQLException e) {
-            showErrorAlert("Database Error", "Could not refresh assignment list.", e.toString());
-            e.printStackTrace();
-        }
-        assignmentList.setItems(assignments);
+        GradingExecutor.supply(AssignmentListSync::loadAll)
+                .whenComplete((loaded, error) -> Platform.runLater(() -> {
+                    if (error != null) {
+                        showErrorAlert("Database Error", "Could not refresh assignment list.", error.toString());
+                        error.printStackTrace();
+                        return;
+                    }
+                    assignments.setAll(loaded);
+                    restoreSelection();
+                }));
+    }
 
+    // Keeps the assignment shown in the form selected after the list changed
+    private void restoreSelection() {
         try {
             if (!idField.getText().isEmpty()) {
                 long id = Long.parseLong(idField.getText());
                 for (Assignment assignment : assignments) {
-                    if (assignment.id == id) {
+                    if (assignment.id == id && assignmentList.getSelectionModel().getSelectedItem() != assignment) {
                         assignmentList.getSelectionModel().select(assignment);
                         break;
                     }
@@ -97,12 +105,23 @@ public class AdminController {
         }
     }
 
-    void onAssignmentSelected(Assignment assignment) {
-        if (assignment == null) return;
-        idField.setText(String.valueOf(assignment.id));
-        nameField.setText(assignment.name);
-        instructionsField.setText(assignment.instructions);
-        answerKeyField.setText(assignment.answerKey);
+    void onAssignmentSelected(Assignment listItem) {
+        if (listItem == null) return;
+        // The list only holds id and name; the rest is loaded when the assignment is opened, off the JavaFX thread
+        GradingExecutor.supply(() -> AssignmentCache.get(listItem.id))
+                .whenComplete((assignment, error) -> Platform.runLater(() -> {
+                    if (error != null) {
+                        showErrorAlert("Database Error", "Could not load assignment.", error.toString());
+                        error.printStackTrace();
+                        return;
+                    }
+                    if (assignment == null) return; // Deleted meanwhile; the change feed removes it from the list
+                    if (assignmentList.getSelectionModel().getSelectedItem() != listItem) return; // Another one was selected meanwhile
+                    idField.setText(String.valueOf(assignment.id));
+                    nameField.setText(assignment.name);
+                    instructionsField.setText(assignment.instructions);
+                    answerKeyField.setText(assignment.answerKey);
+                }));
     }
 
     @FXML
@@ -155,7 +174,10 @@ public class AdminController {
                     stmt.executeUpdate();
                 }
             }
-            refreshAssignmentList(); // Refresh to show changes and re-select
+            // Other clients get the change through the change feed; no need to wait for it here
+            long id = Long.parseLong(idField.getText());
+            AssignmentCache.put(new Assignment(id, name, instructions, answerKey));
+            assignmentSync.put(new Assignment(id, name, null, null));
             showInfoAlert("Success", "Assignment Saved", "The assignment has been successfully saved.");
 
         } catch (SQLException e) {
@@ -191,56 +213,8 @@ public class AdminController {
         }
 
 
-        TableView<ArrayList<String>> tableView = new TableView<>();
-        ObservableList<ArrayList<String>> data = FXCollections.observableArrayList();
-
-        String sql = "SELECT u.username, g.grade FROM grades g JOIN users u ON g.user_id = u.id WHERE g.assignment_id = ?";
-
-        try (Connection conn = MainDataSource.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
-
-            stmt.setLong(1, assignmentId);
-            ResultSet rs = stmt.executeQuery();
-            ResultSetMetaData metaData = rs.getMetaData();
-            int columnCount = metaData.getColumnCount();
-
-            for (int i = 1; i <= columnCount; i++) {
-                final int columnIndex = i - 1;
-                String headerText = metaData.getColumnLabel(i);
-                TableColumn<ArrayList<String>, String> column = new TableColumn<>(headerText);
-                column.setCellValueFactory(cellData -> {
-                    ArrayList<String> rowData = cellData.getValue();
-                    return new SimpleStringProperty(rowData != null && columnIndex < rowData.size() ? rowData.get(columnIndex) : "");
-                });
-                column.setPrefWidth(150);
-                tableView.getColumns().add(column);
-            }
-
-            while (rs.next()) {
-                ArrayList<String> row = new ArrayList<>();
-                for (int i = 1; i <= columnCount; i++) {
-                    row.add(rs.getString(i) != null ? rs.getString(i) : "");
-                }
-                data.add(row);
-            }
-
-            if (data.isEmpty()) {
-                showInfoAlert("No Grades", null, "There are no grades submitted for this assignment yet.");
-                return;
-            }
-
-            tableView.setItems(data);
-            StackPane root = new StackPane(tableView);
-            Scene scene = new Scene(root, 400, 300);
-            Stage stage = new Stage();
-            stage.setTitle("Grades for Assignment: " + nameField.getText() + " (ID: " + assignmentId + ")");
-            stage.setScene(scene);
-            stage.show();
-
-        } catch (SQLException e) {
-            e.printStackTrace();
-            showErrorAlert("Database Error", "Could not retrieve grades.", e.getMessage());
-        }
+        // Paged and sorted in the database; grade changes are pushed to the open window, so no need to reopen it
+        GradesDashboard.show(assignmentId, "Grades for Assignment: " + nameField.getText() + " (ID: " + assignmentId + ")");
     }
 
 
@@ -252,76 +226,52 @@ public class AdminController {
             return;
         }
 
-        Stage stage = new Stage();
-        stage.setTitle("Query Results");
-        TableView<ArrayList<String>> tableView = new TableView<>();
-        ObservableList<ArrayList<String>> data = FXCollections.observableArrayList();
-
-        try (Connection conn = GradingDataSource.getConnection(); // Assuming GradingDataSource is for testing queries
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(query)) {
-
-            ResultSetMetaData metaData = rs.getMetaData();
-            int columnCount = metaData.getColumnCount();
+        // Rows are streamed page by page, so even a huge result shows up right away
+        QueryResultViewer.show("Query Results", query, ExecutionLimits.forAdmins());
+    }
 
-            if (columnCount == 0 && !rs.next()){ // Check if the query might be an UPDATE/INSERT/DELETE
-                // Or if it's a SELECT that genuinely returns no columns (though rare)
-                if (stmt.getUpdateCount() != -1) { // DML command
-                    showInfoAlert("Query Executed", "DML Command Result", "The command executed successfully. Rows affected: " + stmt.getUpdateCount());
-                } else { // SELECT that returned no columns or no rows
-                    showInfoAlert("Query Results", null, "The query executed successfully but returned no data or columns.");
-                }
-                return;
-            }
 
+    @FXML
+    void onRegradeClick(ActionEvent event) {
+        if (idField.getText().isEmpty()) {
+            showErrorAlert("Error", "No Assignment Selected", "Please select an assignment to re-grade.");
+            return;
+        }
 
-            for (int i = 1; i <= columnCount; i++) {
-                final int columnIndex = i - 1;
-                String headerText = metaData.getColumnLabel(i);
-                TableColumn<ArrayList<String>, String> column = new TableColumn<>(headerText);
-                column.setCellValueFactory(cellData -> {
-                    ArrayList<String> rowData = cellData.getValue();
-                    return new SimpleStringProperty(rowData != null && columnIndex < rowData.size() ? rowData.get(columnIndex) : "");
-                });
-                column.setPrefWidth(120);
-                tableView.getColumns().add(column);
-            }
+        long assignmentId;
+        try {
+            assignmentId = Long.parseLong(idField.getText());
+        } catch (NumberFormatException e) {
+            showErrorAlert("Error", "Invalid Assignment ID", "The selected assignment ID is not valid.");
+            return;
+        }
 
-            boolean hasRows = false;
-            while (rs.next()) {
-                hasRows = true;
-                ArrayList<String> row = new ArrayList<>();
-                for (int i = 1; i <= columnCount; i++) {
-                    row.add(rs.getString(i) != null ? rs.getString(i) : "");
-                }
-                data.add(row);
-            }
+        Alert confirmationAlert = new Alert(Alert.AlertType.CONFIRMATION);
+        confirmationAlert.setTitle("Confirm Re-grade");
+        confirmationAlert.setHeaderText("Re-grade Assignment: " + nameField.getText() + "?");
+        confirmationAlert.setContentText("Every stored submission will be graded again against the saved answer key. " +
+                "Grades of students with stored submissions may go down. Are you sure?");
 
-            if (!hasRows && columnCount > 0) { // Has columns but no data rows
-                showInfoAlert("Query Results", null, "The query executed successfully and returned columns, but no data rows.");
-                // Still show the table with headers
-            } else if (!hasRows && columnCount == 0) { // Should have been caught above, but as a fallback
-                showInfoAlert("Query Results", null, "The query executed successfully but returned no data or columns.");
+        confirmationAlert.showAndWait().ifPresent(response -> {
+            if (response != ButtonType.OK) {
                 return;
             }
-
-
-            tableView.setItems(data);
-            StackPane root = new StackPane(tableView);
-            Scene scene = new Scene(root, 800, 600);
-            stage.setScene(scene);
-            stage.show();
-
-        } catch (SQLException e) {
-            e.printStackTrace();
-            showErrorAlert("Database Error", "Failed to execute query or retrieve results.", "SQL Error: " + e.getMessage());
-        } catch (Exception e) {
-            e.printStackTrace();
-            showErrorAlert("Error", "An unexpected error occurred.", e.getMessage());
-        }
+            long start = System.nanoTime();
+            // Re-grading can take a while, keep the window responsive
+            GradingExecutor.supply(() -> Regrader.regradeAssignment(assignmentId))
+                    .whenComplete((count, error) -> Platform.runLater(() -> {
+                        if (error != null) {
+                            error.printStackTrace();
+                            showErrorAlert("Re-grade Failed", "Could not re-grade assignment.", error.getMessage());
+                        } else {
+                            long millis = (System.nanoTime() - start) / 1_000_000;
+                            showInfoAlert("Success", "Assignment Re-graded",
+                                    count + " submission(s) were re-graded in " + millis + " ms.");
+                        }
+                    }));
+        });
     }
 
-
     @FXML
     void onDeleteAssignmentClick(ActionEvent event) {
         if (idField.getText().isEmpty()) {
@@ -340,7 +290,7 @@ public class AdminController {
         Alert confirmationAlert = new Alert(Alert.AlertType.CONFIRMATION);
         confirmationAlert.setTitle("Confirm Deletion");
         confirmationAlert.setHeaderText("Delete Assignment: " + nameField.getText() + "?");
-        confirmationAlert.setContentText("This action will also delete all associated grades and cannot be undone. Are you sure?");
+        confirmationAlert.setContentText("This action will also delete all associated grades and submissions and cannot be undone. Are you sure?");
 
         confirmationAlert.showAndWait().ifPresent(response -> {
             if (response == ButtonType.OK) {
@@ -358,7 +308,14 @@ public class AdminController {
                         // You could log stmtGrades.getUpdateCount() to see how many grades were deleted.
                     }
 
-                    // 2. Delete the assignment itself
+                    // 2. Delete the stored submissions
+                    String deleteSubmissionsQuery = "DELETE FROM submissions WHERE assignment_id = ?";
+                    try (PreparedStatement stmtSubmissions = conn.prepareStatement(deleteSubmissionsQuery)) {
+                        stmtSubmissions.setLong(1, assignmentId);
+                        stmtSubmissions.executeUpdate();
+                    }
+
+                    // 3. Delete the assignment itself
                     String deleteAssignmentQuery = "DELETE FROM assignments WHERE id = ?";
                     try (PreparedStatement stmtAssignment = conn.prepareStatement(deleteAssignmentQuery)) {
                         stmtAssignment.setLong(1, assignmentId);
@@ -367,12 +324,13 @@ public class AdminController {
                         if (rowsAffected > 0) {
                             conn.commit(); // Commit transaction if assignment deletion was successful
 
-                            refreshAssignmentList();
                             idField.clear();
                             nameField.clear();
                             instructionsField.clear();
                             answerKeyField.clear();
-                            showInfoAlert("Success", "Assignment Deleted", "The assignment and its associated grades have been successfully deleted.");
+                            AssignmentCache.invalidate(assignmentId);
+                            assignmentSync.remove(assignmentId);
+                            showInfoAlert("Success", "Assignment Deleted", "The assignment and its associated grades and submissions have been successfully deleted.");
                         } else {
                             conn.rollback(); // Rollback if assignment was not found (should not happen if selected)
                             showErrorAlert("Deletion Failed", "Assignment Not Found", "The selected assignment could not be found in the database for deletion. It might have been deleted by another process.");
@@ -406,6 +364,72 @@ public class AdminController {
         });
     }
 
+    @FXML
+    void onImportClick(ActionEvent event) {
+        Optional<BulkCopy.Table> table = chooseTable("Import CSV", "Import into which table?");
+        if (table.isEmpty()) {
+            return;
+        }
+        File file = csvChooser(table.get()).showOpenDialog(assignmentList.getScene().getWindow());
+        if (file == null) {
+            return;
+        }
+        // Streamed by COPY; large files take a while, keep the window responsive
+        Thread.ofVirtual().name("csv-import").start(() -> {
+            try {
+                BulkCopy.Stats stats = BulkCopy.importCsv(table.get(), file.toPath());
+                Platform.runLater(() -> showInfoAlert("Import Finished", table.get() + " imported", stats.describe()));
+            } catch (Exception e) {
+                e.printStackTrace();
+                Platform.runLater(() -> showErrorAlert("Import Failed", "Nothing was imported.", e.getMessage()));
+            }
+        });
+    }
+
+    @FXML
+    void onExportClick(ActionEvent event) {
+        Optional<BulkCopy.Table> table = chooseTable("Export CSV", "Export which table?");
+        if (table.isEmpty()) {
+            return;
+        }
+        FileChooser chooser = csvChooser(table.get());
+        chooser.setInitialFileName(table.get().name().toLowerCase() + ".csv");
+        File file = chooser.showSaveDialog(assignmentList.getScene().getWindow());
+        if (file == null) {
+            return;
+        }
+        Thread.ofVirtual().name("csv-export").start(() -> {
+            try {
+                BulkCopy.Stats stats = BulkCopy.exportCsv(table.get(), file.toPath());
+                Platform.runLater(() -> showInfoAlert("Export Finished", table.get() + " exported", stats.describe()));
+            } catch (Exception e) {
+                e.printStackTrace();
+                Platform.runLater(() -> showErrorAlert("Export Failed", "Could not export " + table.get() + ".", e.getMessage()));
+            }
+        });
+    }
+
+    private Optional<BulkCopy.Table> chooseTable(String title, String header) {
+        ChoiceDialog<BulkCopy.Table> dialog = new ChoiceDialog<>(BulkCopy.Table.ASSIGNMENTS, BulkCopy.Table.values());
+        dialog.setTitle(title);
+        dialog.setHeaderText(header);
+        dialog.setContentText("Table:");
+        // The expected columns follow the selection
+        Label columns = new Label();
+        dialog.selectedItemProperty().addListener((obs, old, table) -> columns.setText("CSV columns: " + table.columns));
+        columns.setText("CSV columns: " + dialog.getSelectedItem().columns);
+        dialog.getDialogPane().setExpandableContent(columns);
+        dialog.getDialogPane().setExpanded(true);
+        return dialog.showAndWait();
+    }
+
+    private static FileChooser csvChooser(BulkCopy.Table table) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle(table + " CSV");
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV files", "*.csv"));
+        return chooser;
+    }
+
     // Helper methods for alerts
     private void showErrorAlert(String title, String header, String content) {
         Alert alert = new Alert(Alert.AlertType.ERROR);
@@ -0,0 +1,495 @@
+package com.example.bdsqltester.scenes.admin;
+
+import com.example.bdsqltester.datasources.ChangeFeed;
+import com.example.bdsqltester.datasources.MainDataSource;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.collections.FXCollections;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.chart.BarChart;
+import javafx.scene.chart.CategoryAxis;
+import javafx.scene.chart.NumberAxis;
+import javafx.scene.chart.XYChart;
+import javafx.scene.control.*;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.stage.Stage;
+
+import java.sql.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Grades of one assignment, one page at a time.
+ * Sorting and paging happen in the database: every page is a keyset query ("rows after the last one shown")
+ * of at most {@link #PAGE_SIZE} rows, so opening and paging cost the same no matter how many students there are.
+ * Count, mean, min, max and the score distribution are built from one count per distinct grade.
+ * While the window is open, grade changes are pushed through the {@code grade_changes} channel
+ * (see {@code db/08_grade_changes.sql}) and applied to the page and the summary in place, without a query.
+ */
+class GradesDashboard implements ChangeFeed.Listener {
+
+    public static final String CHANNEL = "grade_changes";
+
+    private static final int PAGE_SIZE = 50;
+
+    // Java order of pushed rows; usernames compare by code point, which can differ from the database collation
+    // for non-ASCII names, so such a row may land one place off until the page is reloaded
+    private static final Comparator<GradeRow> BY_USERNAME =
+            Comparator.comparing(GradeRow::username).thenComparingLong(GradeRow::userId);
+    // Rows without a grade come last in both directions, as the NULLS LAST of the queries
+    private static final Comparator<GradeRow> BY_GRADE_ASC =
+            Comparator.comparing(GradeRow::grade, Comparator.nullsLast(Comparator.<Double>naturalOrder()))
+                    .thenComparingLong(GradeRow::userId);
+    private static final Comparator<GradeRow> BY_GRADE_DESC =
+            Comparator.comparing(GradeRow::grade, Comparator.nullsLast(Comparator.<Double>reverseOrder()))
+                    .thenComparing(GradeRow::userId, Comparator.reverseOrder());
+
+    private enum Sort {
+        USERNAME_ASC("Username (A-Z)", "u.username ASC, g.user_id ASC",
+                "(u.username, g.user_id) > (?, ?)", null, BY_USERNAME),
+        USERNAME_DESC("Username (Z-A)", "u.username DESC, g.user_id DESC",
+                "(u.username, g.user_id) < (?, ?)", null, BY_USERNAME.reversed()),
+        GRADE_DESC("Grade (high to low)", "g.grade DESC NULLS LAST, g.user_id DESC",
+                "((g.grade, g.user_id) < (?, ?) OR g.grade IS NULL)", "g.grade IS NULL AND g.user_id < ?", BY_GRADE_DESC),
+        GRADE_ASC("Grade (low to high)", "g.grade ASC NULLS LAST, g.user_id ASC",
+                "((g.grade, g.user_id) > (?, ?) OR g.grade IS NULL)", "g.grade IS NULL AND g.user_id > ?", BY_GRADE_ASC);
+
+        final String label;
+        final String orderBy;
+        final String after;     // Rows after one with a sort key: the key and the user id are bound
+        final String afterNull; // Rows after one without a grade: only the user id is bound; usernames are never null
+        final Comparator<GradeRow> order;
+
+        Sort(String label, String orderBy, String after, String afterNull, Comparator<GradeRow> order) {
+            this.label = label;
+            this.orderBy = orderBy;
+            this.after = after;
+            this.afterNull = afterNull;
+            this.order = order;
+        }
+
+        Object sortKey(GradeRow row) {
+            return this == USERNAME_ASC || this == USERNAME_DESC ? row.username : row.grade;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    private record GradeRow(long userId, String username, Double grade) {
+    }
+
+    /** One pushed change; a missing grade (the old one of an insert, the new one of a delete) is null. */
+    private record GradeChange(String op, long xid, long assignmentId, long userId, Double oldGrade, Double newGrade,
+                               String username) {
+        static GradeChange parse(String payload) {
+            String[] f = payload.split(":", 7);
+            return new GradeChange(f[0], Long.parseLong(f[1]), Long.parseLong(f[2]), Long.parseLong(f[3]),
+                    f[4].isEmpty() ? null : Double.valueOf(f[4]), f[5].isEmpty() ? null : Double.valueOf(f[5]), f[6]);
+        }
+    }
+
+    /**
+     * The transactions a query saw, from {@code pg_current_snapshot()} ("xmin:xmax:xip,..."):
+     * everything before xmin and everything before xmax that was not still running.
+     */
+    private record Snapshot(long xmin, long xmax, Set<Long> running) {
+        static Snapshot parse(String text) {
+            String[] f = text.split(":", 3);
+            Set<Long> running = new HashSet<>();
+            if (!f[2].isEmpty()) {
+                for (String xid : f[2].split(",")) {
+                    running.add(Long.parseLong(xid));
+                }
+            }
+            return new Snapshot(Long.parseLong(f[0]), Long.parseLong(f[1]), running);
+        }
+
+        boolean sees(long xid) {
+            return xid < xmin || (xid < xmax && !running.contains(xid));
+        }
+    }
+
+    // ArrayDeque does not take nulls, so "before the first page" is remembered with a marker
+    private static final GradeRow FIRST_PAGE = new GradeRow(Long.MIN_VALUE, null, null);
+
+    private final long assignmentId;
+    private final Stage stage = new Stage();
+    private final TableView<GradeRow> tableView = new TableView<>();
+    private final ComboBox<Sort> sortBox = new ComboBox<>(FXCollections.observableArrayList(Sort.values()));
+    private final Label summaryLabel = new Label("Loading...");
+    private final Label pageLabel = new Label();
+    private final Button previousButton = new Button("< Previous");
+    private final Button nextButton = new Button("Next >");
+    private final BarChart<String, Number> distributionChart = new BarChart<>(new CategoryAxis(), new NumberAxis());
+    private final XYChart.Series<String, Number> distribution = new XYChart.Series<>();
+
+    // JavaFX thread only
+    private final Deque<GradeRow> previousPages = new ArrayDeque<>(); // Last row before each earlier page
+    private GradeRow pageAfter; // Last row before the current page, null on the first page
+    private long pageOffset;
+    private long totalCount;
+    private int pageRequest; // Pages that arrive after a newer request are dropped
+    private boolean hasNextPage;
+    private final TreeMap<Double, Long> gradeCounts = new TreeMap<>(); // Students per grade, ascending
+    private long ungraded; // Rows without a grade
+    private int summaryRequest;
+    // Changes pushed while a page or the summary is loading, applied once it arrives; null when not loading
+    private List<GradeChange> pageBacklog;
+    private List<GradeChange> summaryBacklog;
+    private AutoCloseable subscription;
+
+    private GradesDashboard(long assignmentId, String title) {
+        this.assignmentId = assignmentId;
+        stage.setTitle(title);
+    }
+
+    static void show(long assignmentId, String title) {
+        new GradesDashboard(assignmentId, title).start();
+    }
+
+    private void start() {
+        TableColumn<GradeRow, String> usernameColumn = new TableColumn<>("username");
+        usernameColumn.setCellValueFactory(cell -> new ReadOnlyStringWrapper(cell.getValue().username()));
+        usernameColumn.setPrefWidth(200);
+        TableColumn<GradeRow, String> gradeColumn = new TableColumn<>("grade");
+        gradeColumn.setCellValueFactory(cell -> new ReadOnlyStringWrapper(String.valueOf(cell.getValue().grade())));
+        gradeColumn.setPrefWidth(100);
+        for (TableColumn<GradeRow, String> column : List.of(usernameColumn, gradeColumn)) {
+            column.setSortable(false); // Sorting a page locally would be misleading; use the sort box
+            tableView.getColumns().add(column);
+        }
+        tableView.setPlaceholder(new Label("There are no grades submitted for this assignment yet."));
+
+        sortBox.getSelectionModel().select(Sort.USERNAME_ASC);
+        sortBox.setOnAction(e -> firstPage());
+        previousButton.setOnAction(e -> previousPage());
+        nextButton.setOnAction(e -> nextPage());
+        previousButton.setDisable(true);
+        nextButton.setDisable(true);
+
+        distributionChart.setLegendVisible(false);
+        distributionChart.setAnimated(false);
+        distributionChart.setTitle("Score distribution");
+        distributionChart.setPrefHeight(220);
+        for (int i = 0; i < 10; i++) {
+            String range = i == 9 ? "90-100" : (i * 10) + "-" + (i * 10 + 9);
+            distribution.getData().add(new XYChart.Data<>(range, 0));
+        }
+        distributionChart.getData().add(distribution);
+
+        HBox top = new HBox(8, new Label("Sort by:"), sortBox, summaryLabel);
+        top.setAlignment(Pos.CENTER_LEFT);
+        top.setPadding(new Insets(8));
+        HBox spacer = new HBox();
+        HBox.setHgrow(spacer, Priority.ALWAYS);
+        HBox bottom = new HBox(8, pageLabel, spacer, previousButton, nextButton);
+        bottom.setAlignment(Pos.CENTER_LEFT);
+        bottom.setPadding(new Insets(8));
+
+        BorderPane root = new BorderPane(tableView);
+        root.setTop(new VBox(top, distributionChart));
+        root.setBottom(bottom);
+        stage.setScene(new Scene(root, 520, 640));
+        stage.setOnHidden(e -> unsubscribe());
+        stage.show();
+
+        // Shown right away, then loaded again once the feed listens, so no change falls between the load
+        // and the first notification
+        subscription = ChangeFeed.subscribe(CHANNEL, this);
+        loadSummary();
+        firstPage();
+    }
+
+    private void unsubscribe() {
+        try {
+            subscription.close();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void onNotification(String payload) {
+        GradeChange change = GradeChange.parse(payload);
+        if (change.assignmentId == assignmentId) {
+            Platform.runLater(() -> apply(change));
+        }
+    }
+
+    @Override
+    public void onListening() {
+        onResync();
+    }
+
+    @Override
+    public void onResync() {
+        // Changes were missed while the feed was down
+        Platform.runLater(() -> {
+            loadSummary();
+            loadPage();
+        });
+    }
+
+    private void loadSummary() {
+        int request = ++summaryRequest;
+        summaryBacklog = new ArrayList<>();
+        // One statement, so the snapshot is the one the counts were taken in
+        String sql = "SELECT s.snapshot, g.grade, g.n FROM (SELECT pg_current_snapshot()::text AS snapshot) s " +
+                "LEFT JOIN (SELECT grade, count(*) AS n FROM grades WHERE assignment_id = ? GROUP BY grade) g ON true";
+        Thread.ofVirtual().name("grades-summary").start(() -> {
+            try (Connection conn = MainDataSource.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setLong(1, assignmentId);
+                Snapshot snapshot = null;
+                Map<Double, Long> counts = new TreeMap<>();
+                long nulls = 0;
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        snapshot = Snapshot.parse(rs.getString(1));
+                        long n = rs.getLong(3);
+                        double grade = rs.getDouble(2);
+                        if (!rs.wasNull()) {
+                            counts.put(grade, n);
+                        } else {
+                            nulls += n; // 0 for the single row of an assignment without grades
+                        }
+                    }
+                }
+                Snapshot seen = snapshot;
+                long ungradedRows = nulls;
+                Platform.runLater(() -> {
+                    if (request != summaryRequest) {
+                        return;
+                    }
+                    gradeCounts.clear();
+                    gradeCounts.putAll(counts);
+                    ungraded = ungradedRows;
+                    for (GradeChange change : summaryBacklog) {
+                        if (!seen.sees(change.xid)) {
+                            count(change);
+                        }
+                    }
+                    summaryBacklog = null;
+                    showSummary();
+                });
+            } catch (SQLException e) {
+                e.printStackTrace();
+                Platform.runLater(() -> summaryLabel.setText("Could not load the summary: " + e.getMessage()));
+            }
+        });
+    }
+
+    private void apply(GradeChange change) {
+        if (pageBacklog != null) {
+            pageBacklog.add(change);
+        } else {
+            applyToPage(change);
+        }
+        if (summaryBacklog != null) {
+            summaryBacklog.add(change);
+        } else {
+            count(change);
+            showSummary();
+        }
+    }
+
+    // Replaces the student's row where it is, even if the new grade would sort it elsewhere, so rows don't jump
+    // around while the admin reads them; a new row is inserted only if it sorts into this page
+    private void applyToPage(GradeChange change) {
+        List<GradeRow> rows = tableView.getItems();
+        int index = -1;
+        for (int i = 0; i < rows.size(); i++) {
+            if (rows.get(i).userId() == change.userId) {
+                index = i;
+                break;
+            }
+        }
+        if (change.op.equals("DELETE")) {
+            if (index >= 0) {
+                rows.remove(index);
+            }
+            return;
+        }
+        GradeRow row = new GradeRow(change.userId, change.username, change.newGrade);
+        if (index >= 0) {
+            rows.set(index, row);
+            return;
+        }
+        Comparator<GradeRow> order = sortBox.getValue().order;
+        if ((pageAfter != null && order.compare(row, pageAfter) <= 0)
+                || (hasNextPage && !rows.isEmpty() && order.compare(row, rows.get(rows.size() - 1)) > 0)) {
+            return; // Belongs on another page
+        }
+        int position = 0;
+        while (position < rows.size() && order.compare(rows.get(position), row) < 0) {
+            position++;
+        }
+        rows.add(position, row);
+        if (rows.size() > PAGE_SIZE) {
+            rows.remove(rows.size() - 1); // Pushed onto the next page
+            hasNextPage = true;
+            nextButton.setDisable(false);
+        }
+    }
+
+    private void count(GradeChange change) {
+        if (!change.op.equals("INSERT")) {
+            uncount(change.oldGrade);
+        }
+        if (!change.op.equals("DELETE")) {
+            if (change.newGrade == null) {
+                ungraded++;
+            } else {
+                gradeCounts.merge(change.newGrade, 1L, Long::sum);
+            }
+        }
+    }
+
+    private void uncount(Double grade) {
+        if (grade == null) {
+            ungraded = Math.max(0, ungraded - 1);
+        } else {
+            gradeCounts.computeIfPresent(grade, (g, n) -> n > 1 ? n - 1 : null);
+        }
+    }
+
+    private void showSummary() {
+        long graded = 0;
+        double sum = 0;
+        long[] buckets = new long[10];
+        for (Map.Entry<Double, Long> entry : gradeCounts.entrySet()) {
+            graded += entry.getValue();
+            sum += entry.getKey() * entry.getValue();
+            // Ten buckets of ten points; 100 goes into the last one, negative grades would be a data error
+            int bucket = (int) Math.max(0, Math.min(Math.floor(entry.getKey() / 10), 9));
+            buckets[bucket] += entry.getValue();
+        }
+        totalCount = graded + ungraded;
+        summaryLabel.setText(totalCount == 0 ? "No grades yet." : graded == 0
+                ? String.format("Students: %d", totalCount)
+                : String.format("Students: %d   Mean: %.1f   Min: %s   Max: %s",
+                        totalCount, sum / graded, format(gradeCounts.firstKey()), format(gradeCounts.lastKey())));
+        for (int i = 0; i < buckets.length; i++) {
+            distribution.getData().get(i).setYValue(buckets[i]);
+        }
+        updatePageLabel();
+    }
+
+    // 87.5 stays 87.5, 100.0 shows as 100
+    private static String format(double grade) {
+        return grade == Math.rint(grade) ? String.valueOf((long) grade) : String.valueOf(grade);
+    }
+
+    private void firstPage() {
+        previousPages.clear();
+        pageAfter = null;
+        pageOffset = 0;
+        loadPage();
+    }
+
+    private void nextPage() {
+        List<GradeRow> rows = tableView.getItems();
+        if (rows.isEmpty()) {
+            return;
+        }
+        previousPages.push(pageAfter == null ? FIRST_PAGE : pageAfter);
+        pageAfter = rows.get(rows.size() - 1);
+        pageOffset += rows.size();
+        loadPage();
+    }
+
+    private void previousPage() {
+        if (previousPages.isEmpty()) {
+            return;
+        }
+        GradeRow after = previousPages.pop();
+        pageAfter = after == FIRST_PAGE ? null : after;
+        pageOffset = Math.max(0, pageOffset - PAGE_SIZE); // Every page before this one was full
+        loadPage();
+    }
+
+    private void loadPage() {
+        Sort sort = sortBox.getValue();
+        GradeRow after = pageAfter;
+        Object afterKey = after == null ? null : sort.sortKey(after);
+        String condition = after == null ? "" : " AND " + (afterKey != null ? sort.after : sort.afterNull);
+        int request = ++pageRequest;
+        pageBacklog = new ArrayList<>();
+        previousButton.setDisable(true);
+        nextButton.setDisable(true);
+
+        Thread.ofVirtual().name("grades-page").start(() -> {
+            String sql = "SELECT g.user_id, u.username, g.grade FROM grades g JOIN users u ON g.user_id = u.id " +
+                    "WHERE g.assignment_id = ?" + condition +
+                    " ORDER BY " + sort.orderBy + " LIMIT " + (PAGE_SIZE + 1); // One extra row tells if there is a next page
+            try (Connection conn = MainDataSource.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
+                stmt.setLong(1, assignmentId);
+                if (after != null) {
+                    int index = 2;
+                    if (afterKey != null) {
+                        stmt.setObject(index++, afterKey);
+                    }
+                    stmt.setLong(index, after.userId());
+                }
+                List<GradeRow> page = new ArrayList<>(PAGE_SIZE + 1);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        double grade = rs.getDouble(3);
+                        page.add(new GradeRow(rs.getLong(1), rs.getString(2), rs.wasNull() ? null : grade));
+                    }
+                }
+                boolean hasNext = page.size() > PAGE_SIZE;
+                List<GradeRow> shown = hasNext ? page.subList(0, PAGE_SIZE) : page;
+                Platform.runLater(() -> {
+                    if (request == pageRequest) {
+                        showPage(shown, hasNext);
+                    }
+                });
+            } catch (SQLException e) {
+                e.printStackTrace();
+                Platform.runLater(() -> {
+                    if (request == pageRequest) {
+                        pageBacklog = null;
+                    }
+                    summaryLabel.setText("Could not load grades: " + e.getMessage());
+                    previousButton.setDisable(previousPages.isEmpty());
+                });
+            }
+        });
+    }
+
+    private void showPage(List<GradeRow> page, boolean hasNext) {
+        tableView.getItems().setAll(page);
+        tableView.scrollTo(0);
+        hasNextPage = hasNext;
+        previousButton.setDisable(previousPages.isEmpty());
+        nextButton.setDisable(!hasNext);
+        // Replayed in order, so the page ends up with the latest state whether or not it already had a change
+        for (GradeChange change : pageBacklog) {
+            applyToPage(change);
+        }
+        pageBacklog = null;
+        updatePageLabel();
+    }
+
+    private void updatePageLabel() {
+        int shown = tableView.getItems().size();
+        pageLabel.setText(shown == 0 ? "" : "Rows " + (pageOffset + 1) + "-" + (pageOffset + shown) + " of " + totalCount);
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.bdsqltester.scenes.user;
+
+import com.example.bdsqltester.grading.SubmissionState;
+import javafx.beans.property.SimpleStringProperty;
+
+/**
+ * One row of the submission list in the user view.
+ */
+class SubmissionEntry {
+    final int number;
+    final String assignmentName;
+    final SimpleStringProperty text = new SimpleStringProperty();
+
+    private SubmissionState state;
+
+    SubmissionEntry(int number, String assignmentName) {
+        this.number = number;
+        this.assignmentName = assignmentName;
+        update(SubmissionState.QUEUED, null);
+    }
+
+    SubmissionState getState() {
+        return state;
+    }
+
+    /** Must be called on the JavaFX thread, the text is bound to a list cell. */
+    void update(SubmissionState state, String detail) {
+        this.state = state;
+        text.set("#" + number + " " + assignmentName + ": " + state + (detail == null ? "" : " (" + detail + ")"));
+    }
+}
@@ -2,6 +2,16 @@ package com.example.bdsqltester.scenes.user;
 
 import com.example.bdsqltester.datasources.MainDataSource;
 import com.example.bdsqltester.dtos.Assignment;
+import com.example.bdsqltester.dtos.AssignmentCache;
+import com.example.bdsqltester.grading.AdmissionRejectedException;
+import com.example.bdsqltester.grading.ExecutionLimits;
+import com.example.bdsqltester.grading.GradingExecutor;
+import com.example.bdsqltester.grading.GradingResult;
+import com.example.bdsqltester.grading.Submission;
+import com.example.bdsqltester.grading.SubmissionState;
+import com.example.bdsqltester.scenes.AssignmentListSync;
+import com.example.bdsqltester.scenes.QueryResultViewer;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
@@ -9,8 +19,7 @@ import javafx.scene.control.*;
 import javafx.scene.input.MouseEvent;
 
 import java.sql.*;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.CompletionException;
 
 
 public class UserController {
@@ -22,16 +31,14 @@ public class UserController {
     @FXML private TextArea answerKeyField; // Contains the answer SQL query string
     @FXML private TextArea userQueryArea;  // Contains the user's SQL query string
     @FXML private Label gradeLabel;
+    @FXML private ProgressIndicator submissionProgress;
+    @FXML private ListView<SubmissionEntry> submissionList;
 
-    Connection connection = MainDataSource.getConnection();
-    private int userId;
+    private final ObservableList<Assignment> assignments = FXCollections.observableArrayList();
+    private final ObservableList<SubmissionEntry> submissions = FXCollections.observableArrayList();
+    private int submissionCount = 0;
 
-    public UserController() throws SQLException {
-        // Constructor can remain as is, or ensure connection is handled robustly.
-        // If MainDataSource.getConnection() can throw SQLException,
-        // it might be better to initialize connection in initialize() or where it's first needed.
-        // For simplicity, assuming it's handled or connection is non-null.
-    }
+    private int userId;
 
 
     public void setUserId(int id) {
@@ -40,81 +47,114 @@ public class UserController {
 
     @FXML
     public void initialize() {
-        if (connection == null) {
-            // Attempt to establish connection if null
-            try {
-                connection = MainDataSource.getConnection();
-                if (connection == null) {
-                    showAlert("Error", "Database connection could not be established.");
-                    return;
+        assignmentList.setItems(assignments);
+        // Shown from the local snapshot once the view is up; the server is only asked for the list if it changed
+        AssignmentListSync.bind(assignmentList, assignments, this::onAssignmentsChanged);
+        assignmentList.setOnMouseClicked(this::onAssignmentSelected);
+
+        submissionList.setItems(submissions);
+        submissionList.setCellFactory(param -> new ListCell<SubmissionEntry>() {
+            @Override
+            protected void updateItem(SubmissionEntry item, boolean empty) {
+                super.updateItem(item, empty);
+                textProperty().unbind();
+                if (empty || item == null) {
+                    setText(null);
+                } else {
+                    textProperty().bind(item.text);
                 }
-            } catch (SQLException e) {
-                showAlert("Error", "Database connection failed: " + e.getMessage());
-                e.printStackTrace();
-                return;
             }
-        }
-        loadAssignments();
-        assignmentList.setOnMouseClicked(this::onAssignmentSelected);
+        });
+        submissionProgress.setVisible(false);
     }
 
-    private void loadAssignments() {
-        ObservableList<Assignment> assignments = FXCollections.observableArrayList();
-        // Ensure connection is available before proceeding
-        if (connection == null) {
-            showAlert("Error", "Database connection is not available for loading assignments.");
+    // An admin changed or deleted assignments; keep the open one up to date without touching the student's query
+    private void onAssignmentsChanged() {
+        if (idField.getText().isEmpty()) {
             return;
         }
-        try (PreparedStatement stmt = connection.prepareStatement("SELECT * FROM assignments ORDER BY id");
-             ResultSet rs = stmt.executeQuery()) {
-
-            while (rs.next()) {
-                assignments.add(new Assignment(rs));
+        long id = Long.parseLong(idField.getText());
+        for (Assignment listItem : assignments) {
+            if (listItem.id == id) {
+                if (assignmentList.getSelectionModel().getSelectedItem() != listItem) {
+                    assignmentList.getSelectionModel().select(listItem);
+                }
+                // Only queries if this one changed, but that is still a round trip; keep it off the JavaFX thread
+                GradingExecutor.supply(() -> AssignmentCache.get(id))
+                        .whenComplete((assignment, error) -> Platform.runLater(() -> {
+                            if (error != null) {
+                                unwrap(error).printStackTrace();
+                            } else if (assignment != null && isOpen(id)) {
+                                nameField.setText(assignment.name);
+                                instructionsField.setText(assignment.instructions);
+                                answerKeyField.setText(assignment.answerKey);
+                            }
+                        }));
+                return;
             }
-            assignmentList.setItems(assignments);
-
-        } catch (SQLException e) {
-            showAlert("Error", "Failed to load assignments: " + e.getMessage());
-            e.printStackTrace();
         }
+        // The open assignment was deleted
+        idField.clear();
+        nameField.clear();
+        instructionsField.clear();
+        answerKeyField.clear();
+        gradeLabel.setText("Score: -");
     }
 
 
     private void onAssignmentSelected(MouseEvent event) {
-        Assignment selected = assignmentList.getSelectionModel().getSelectedItem();
-        if (selected == null) return;
-
-        idField.setText(String.valueOf(selected.id));
-        nameField.setText(selected.name);
-        instructionsField.setText(selected.instructions);
-        answerKeyField.setText(selected.answerKey); // This sets the answer query string
-        userQueryArea.clear(); // Clear previous user query for a new assignment
-        gradeLabel.setText("Score: -"); // Reset grade label
-        loadUserGrade((int) selected.id);
+        Assignment listItem = assignmentList.getSelectionModel().getSelectedItem();
+        if (listItem == null) return;
+
+        // The list only holds id and name; the rest is loaded when the assignment is opened
+        GradingExecutor.supply(() -> AssignmentCache.get(listItem.id))
+                .whenComplete((selected, error) -> Platform.runLater(() -> {
+                    if (error != null) {
+                        showAlert("Error", "Failed to load assignment: " + unwrap(error).getMessage());
+                        unwrap(error).printStackTrace();
+                        return;
+                    }
+                    if (selected == null) return; // Deleted meanwhile; the change feed removes it from the list
+                    if (assignmentList.getSelectionModel().getSelectedItem() != listItem) return; // Clicked another one meanwhile
+
+                    idField.setText(String.valueOf(selected.id));
+                    nameField.setText(selected.name);
+                    instructionsField.setText(selected.instructions);
+                    answerKeyField.setText(selected.answerKey); // This sets the answer query string
+                    userQueryArea.clear(); // Clear previous user query for a new assignment
+                    gradeLabel.setText("Score: -"); // Reset grade label
+                    loadUserGrade((int) selected.id);
+                }));
     }
 
 
     private void loadUserGrade(int assignmentId) {
-        if (connection == null) {
-            showAlert("Error", "Database connection is not available for loading grade.");
-            gradeLabel.setText("Score: - (DB Error)");
-            return;
-        }
-        try (PreparedStatement stmt = connection.prepareStatement("SELECT grade FROM grades WHERE assignment_id = ? AND user_id = ?")) {
-            stmt.setInt(1, assignmentId);
-            stmt.setInt(2, userId);
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    gradeLabel.setText("Score: " + rs.getInt("grade"));
-                } else {
-                    gradeLabel.setText("Score: -");
+        // A pooled connection per use; the view may have been loaded before the pool was ready
+        GradingExecutor.supply(() -> {
+            try (Connection connection = MainDataSource.getConnection();
+                 PreparedStatement stmt = connection.prepareStatement("SELECT grade FROM grades WHERE assignment_id = ? AND user_id = ?")) {
+                stmt.setInt(1, assignmentId);
+                stmt.setInt(2, userId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    return rs.next() ? (Integer) rs.getInt("grade") : null;
                 }
             }
-        } catch (SQLException e) {
-            showAlert("Error", "Failed to load grade: " + e.getMessage());
-            gradeLabel.setText("Score: - (Error)");
-            e.printStackTrace();
-        }
+        }).whenComplete((grade, error) -> Platform.runLater(() -> {
+            if (!isOpen(assignmentId)) {
+                return; // Another assignment was opened meanwhile
+            }
+            if (error != null) {
+                showAlert("Error", "Failed to load grade: " + unwrap(error).getMessage());
+                gradeLabel.setText("Score: - (Error)");
+                unwrap(error).printStackTrace();
+            } else {
+                gradeLabel.setText(grade == null ? "Score: -" : "Score: " + grade);
+            }
+        }));
+    }
+
+    private boolean isOpen(long assignmentId) {
+        return String.valueOf(assignmentId).equals(idField.getText());
     }
 
     @FXML
@@ -124,17 +164,9 @@ public class UserController {
             showAlert("Test Query", "Query area is empty.");
             return;
         }
-        if (connection == null) {
-            showAlert("Error", "Database connection is not available for testing query.");
-            return;
-        }
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(query)) {
-            String resultString = resultSetToString(rs);
-            showAlert("Query Output", resultString.isEmpty() ? "(No results)" : resultString);
-        } catch (SQLException e) {
-            showAlert("Query Error", e.getMessage());
-        }
+
+        // Rows are streamed page by page, so even a huge result shows up right away
+        QueryResultViewer.show("Query Output", query, ExecutionLimits.forStudents(), userId);
     }
 
     @FXML
@@ -143,10 +175,6 @@ public class UserController {
             showAlert("Error", "Please select an assignment first.");
             return;
         }
-        if (connection == null) {
-            showAlert("Error", "Database connection is not available for submission.");
-            return;
-        }
 
         int assignmentId;
         try {
@@ -168,135 +196,82 @@ public class UserController {
             return;
         }
 
-        int calculatedGrade = 0; // Default grade
-
-        try {
-            String userResultString;
-            // Attempt to execute user's query
-            try (Statement userStmt = connection.createStatement();
-                 ResultSet userRs = userStmt.executeQuery(userQueryString)) {
-                userResultString = resultSetToString(userRs);
-            } catch (SQLException e) {
-                // User's query failed to execute
-                showAlert("Query Execution Error", "Your query failed: " + e.getMessage());
-                // Grade remains 0, proceed to save this 0 score.
-                updateOrInsertGrade(assignmentId, userId, calculatedGrade); // Save grade 0
-                gradeLabel.setText("Score: " + calculatedGrade);
-                showAlert("Submission Result", "Your query produced an error. Score: " + calculatedGrade);
-                return; // Exit after handling user query error
-            }
-
-            // User's query was successful, now execute answer key's query
-            String answerResultString;
-            try (Statement answerStmt = connection.createStatement();
-                 ResultSet answerRs = answerStmt.executeQuery(answerQueryString)) {
-                answerResultString = resultSetToString(answerRs);
-            } catch (SQLException e) {
-                // This is an error with the assignment setup (answer key query is invalid)
-                showAlert("System Error", "The answer key query is invalid. Please contact an administrator. Error: " + e.getMessage());
-                return; // Don't proceed with grading if answer key is broken
+        SubmissionEntry entry = new SubmissionEntry(++submissionCount, nameField.getText());
+        submissions.add(0, entry);
+        updateSubmissionProgress();
+
+        Submission submission = new Submission(assignmentId, userId, userQueryString, answerQueryString);
+        GradingExecutor.submit(submission, state -> Platform.runLater(() -> {
+            entry.update(state, null);
+            updateSubmissionProgress();
+        })).whenComplete((result, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                Throwable cause = unwrap(error);
+                if (cause instanceof AdmissionRejectedException) {
+                    entry.update(SubmissionState.FAILED, "not queued, grading is busy");
+                    updateSubmissionProgress();
+                    showAlert("Grading Busy", "Your submission was not accepted. " + cause.getMessage());
+                    return;
+                }
+                entry.update(SubmissionState.FAILED, cause.getMessage());
+                updateSubmissionProgress();
+                showAlert("Database Error", "An error occurred during submission process: " + cause.getMessage());
+                return;
             }
+            onSubmissionGraded(assignmentId, entry, result);
+        }));
+    }
 
-            // Both queries executed successfully. Now, determine the grade based on the new logic:
-            if (userQueryString.trim().equalsIgnoreCase(answerQueryString.trim())) {
-                calculatedGrade = 100; // Exact textual match of the SQL queries
-            } else if (userResultString.equals(answerResultString)) {
-                // SQL queries differ, but their results are identical (e.g., SELECT 999 vs SELECT 1000-1)
-                calculatedGrade = 50;
-            } else if (sortLines(userResultString).equals(sortLines(answerResultString))) {
-                // SQL queries differ, results differ in order, but match when lines are sorted
-                // This maintains the original partial credit if the above conditions aren't met.
-                // You could assign a different score (e.g., 25 or 40) if you want to distinguish this tier.
-                calculatedGrade = 50;
-            } else {
-                calculatedGrade = 0; // No match by any criteria
+    private void onSubmissionGraded(int assignmentId, SubmissionEntry entry, GradingResult result) {
+        switch (result.outcome) {
+            case ANSWER_KEY_ERROR -> {
+                entry.update(SubmissionState.FAILED, "answer key error");
+                showAlert("System Error", "The answer key query is invalid. Please contact an administrator. Error: " + result.detail);
+                return;
             }
-
-            // Update database with the calculated grade
-            updateOrInsertGrade(assignmentId, userId, calculatedGrade);
-
-            gradeLabel.setText("Score: " + calculatedGrade);
-            showAlert("Submission Result", "You received a score of: " + calculatedGrade);
-
-        } catch (SQLException e) { // Catches SQLExceptions from updateOrInsertGrade or other DB ops
-            showAlert("Database Error", "An error occurred during submission process: " + e.getMessage());
-            e.printStackTrace();
+            case GRADED -> entry.update(SubmissionState.FINISHED, "score " + result.score);
+            case QUERY_ERROR -> entry.update(SubmissionState.FINISHED, "query error, score " + result.score);
+            default -> entry.update(SubmissionState.FINISHED, limitName(result.outcome) + ", score " + result.score);
         }
-    }
+        updateSubmissionProgress();
 
-    /**
-     * Helper method to update an existing grade record or insert a new one.
-     * Only updates if the new grade is higher than the previous grade.
-     */
-    private void updateOrInsertGrade(int assignmentId, int userId, int grade) throws SQLException {
-        // Ensure connection is available
-        if (connection == null) {
-            throw new SQLException("Database connection is not available for updating grade.");
+        // Only touch the score label if the student is still looking at the same assignment
+        if (isOpen(assignmentId)) {
+            gradeLabel.setText("Score: " + result.score);
         }
-
-        String selectSql = "SELECT grade FROM grades WHERE assignment_id = ? AND user_id = ?";
-        try (PreparedStatement checkStmt = connection.prepareStatement(selectSql)) {
-            checkStmt.setInt(1, assignmentId);
-            checkStmt.setInt(2, userId);
-            try (ResultSet rs = checkStmt.executeQuery()) {
-                if (rs.next()) {
-                    int prevGrade = rs.getInt("grade");
-                    if (grade > prevGrade) {
-                        String updateSql = "UPDATE grades SET grade = ? WHERE assignment_id = ? AND user_id = ?";
-                        try (PreparedStatement updateStmt = connection.prepareStatement(updateSql)) {
-                            updateStmt.setInt(1, grade);
-                            updateStmt.setInt(2, assignmentId);
-                            updateStmt.setInt(3, userId);
-                            updateStmt.executeUpdate();
-                        }
-                    }
-                    // If grade is not higher, no update is performed, previous higher score stands.
-                } else {
-                    String insertSql = "INSERT INTO grades (assignment_id, user_id, grade) VALUES (?, ?, ?)";
-                    try (PreparedStatement insertStmt = connection.prepareStatement(insertSql)) {
-                        insertStmt.setInt(1, assignmentId);
-                        insertStmt.setInt(2, userId);
-                        insertStmt.setInt(3, grade);
-                        insertStmt.executeUpdate();
-                    }
-                }
-            }
+        if (result.outcome == GradingResult.Outcome.GRADED) {
+            showAlert("Submission Result", "You received a score of: " + result.score
+                    + (result.detail == null ? "" : "\n\n" + result.detail));
+        } else if (result.outcome == GradingResult.Outcome.QUERY_ERROR) {
+            showAlert("Submission Result", "Your query produced an error: " + result.detail + "\nScore: " + result.score);
+        } else {
+            showAlert("Submission Result", "Your query was stopped (" + limitName(result.outcome) + "): "
+                    + result.detail + "\nScore: " + result.score);
         }
     }
 
+    private static String limitName(GradingResult.Outcome outcome) {
+        return switch (outcome) {
+            case TIMEOUT -> "time limit exceeded";
+            case ROW_LIMIT -> "too many rows";
+            case BYTE_LIMIT -> "result too large";
+            case WRITE_REJECTED -> "queries may not modify data";
+            case TOO_EXPENSIVE -> "estimated too expensive";
+            default -> outcome.toString();
+        };
+    }
 
-    private String resultSetToString(ResultSet rs) throws SQLException {
-        StringBuilder sb = new StringBuilder();
-        ResultSetMetaData md = rs.getMetaData();
-        int colCount = md.getColumnCount();
-        boolean firstRow = true;
-        while (rs.next()) {
-            if (!firstRow) {
-                sb.append("\n"); // Add newline before subsequent rows
-            }
-            for (int i = 1; i <= colCount; i++) {
-                sb.append(rs.getString(i));
-                if (i < colCount) {
-                    sb.append("\t"); // Add tab between columns
-                }
-            }
-            firstRow = false;
-        }
-        // No .trim() here to preserve trailing newlines if they are significant for comparison,
-        // or add .trim() if leading/trailing whitespace on the whole result block is not desired.
-        // The original had .trim(), so let's be consistent if that was the intent for the overall block.
-        return sb.toString().trim(); // Trim the final string
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
     }
 
-    private String sortLines(String input) {
-        if (input == null || input.isEmpty()) {
-            return "";
-        }
-        List<String> lines = new ArrayList<>(List.of(input.split("\n")));
-        lines.sort(String::compareTo);
-        return String.join("\n", lines);
+    private void updateSubmissionProgress() {
+        boolean inFlight = submissions.stream()
+                .anyMatch(e -> e.getState() == SubmissionState.QUEUED || e.getState() == SubmissionState.RUNNING);
+        submissionProgress.setVisible(inFlight);
     }
 
+
     private void showAlert(String title, String message) {
         Alert alert = new Alert(Alert.AlertType.INFORMATION);
         alert.setTitle(title);
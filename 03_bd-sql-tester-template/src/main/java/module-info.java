@@ -3,7 +3,10 @@ module com.example.bdsqltester {
     requires javafx.fxml;
     requires com.zaxxer.hikari;
     requires java.sql;
+    requires org.postgresql.jdbc;
     requires org.slf4j;
+    requires java.management;
+    requires jdk.httpserver;
 
 
     opens com.example.bdsqltester to javafx.fxml;
@@ -16,4 +19,5 @@ module com.example.bdsqltester {
     opens com.example.bdsqltester.scenes.admin to javafx.fxml;
     exports com.example.bdsqltester.scenes.user;
     opens com.example.bdsqltester.scenes.user to javafx.fxml;
+    exports com.example.bdsqltester.metrics;
 }
\ No newline at end of file
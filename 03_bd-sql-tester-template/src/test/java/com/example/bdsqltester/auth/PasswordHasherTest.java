@@ -0,0 +1,52 @@
+package com.example.bdsqltester.auth;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PasswordHasherTest {
+
+    // Far below the default, so the tests stay fast
+    private static final int ITERATIONS = 1000;
+
+    @Test
+    void verifiesTheRightPasswordOnly() {
+        String stored = PasswordHasher.hash("correct horse", ITERATIONS);
+        assertTrue(stored.startsWith("pbkdf2-sha256$1000$"));
+        assertTrue(PasswordHasher.verify("correct horse", stored));
+        assertFalse(PasswordHasher.verify("correct horse ", stored));
+        assertFalse(PasswordHasher.verify("", stored));
+    }
+
+    @Test
+    void saltsEveryHash() {
+        assertNotEquals(PasswordHasher.hash("secret", ITERATIONS), PasswordHasher.hash("secret", ITERATIONS));
+    }
+
+    @Test
+    void acceptsLegacyPlainTextPasswords() {
+        assertTrue(PasswordHasher.verify("secret", "secret"));
+        assertFalse(PasswordHasher.verify("Secret", "secret"));
+        assertFalse(PasswordHasher.verify("secret", null));
+    }
+
+    @Test
+    void rejectsMalformedHashes() {
+        assertFalse(PasswordHasher.verify("secret", "pbkdf2-sha256$many$c2FsdA$aGFzaA"));
+        assertFalse(PasswordHasher.verify("secret", "pbkdf2-sha256$1000$not base64!$aGFzaA"));
+        assertFalse(PasswordHasher.verify("secret", "pbkdf2-sha256$1000$$aGFzaA"));
+        assertFalse(PasswordHasher.verify("secret", "pbkdf2-sha256$0$c2FsdA$aGFzaA"));
+        assertFalse(PasswordHasher.verify("secret", "pbkdf2-sha256$1000$c2FsdA"));
+        assertTrue(PasswordHasher.needsRehash("pbkdf2-sha256$many$c2FsdA$aGFzaA"));
+    }
+
+    @Test
+    void reportsWeakHashes() {
+        assertTrue(PasswordHasher.needsRehash("secret"));
+        assertTrue(PasswordHasher.needsRehash(null));
+        assertTrue(PasswordHasher.needsRehash(PasswordHasher.hash("secret", PasswordHasher.ITERATIONS - 1)));
+        assertFalse(PasswordHasher.needsRehash(PasswordHasher.hash("secret")));
+    }
+}
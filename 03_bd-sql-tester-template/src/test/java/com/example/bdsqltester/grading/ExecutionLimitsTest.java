@@ -0,0 +1,46 @@
+package com.example.bdsqltester.grading;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExecutionLimitsTest {
+
+    @Test
+    void acceptsOneStatement() {
+        assertDoesNotThrow(() -> ExecutionLimits.requireSingleStatement("SELECT 1"));
+        assertDoesNotThrow(() -> ExecutionLimits.requireSingleStatement("SELECT 1;\n-- done\n"));
+        assertDoesNotThrow(() -> ExecutionLimits.requireSingleStatement("SELECT 1;;"));
+    }
+
+    @Test
+    void ignoresSemicolonsInLiteralsAndComments() {
+        assertDoesNotThrow(() -> ExecutionLimits.requireSingleStatement("SELECT 'a; b', \"c;d\" FROM t /* ; */ -- ;"));
+        assertDoesNotThrow(() -> ExecutionLimits.requireSingleStatement("SELECT E'it\\'s; fine', $x$ ; $x$"));
+    }
+
+    @Test
+    void rejectsASecondStatement() {
+        SQLException e = assertThrows(SQLException.class,
+                () -> ExecutionLimits.requireSingleStatement("SET LOCAL statement_timeout = 0; SELECT pg_sleep(60)"));
+        assertEquals("42601", e.getSQLState());
+        assertThrows(SQLException.class,
+                () -> ExecutionLimits.requireSingleStatement("COMMIT; SET statement_timeout = 0; SELECT 1"));
+        assertThrows(SQLException.class,
+                () -> ExecutionLimits.requireSingleStatement("SELECT 1 /* ; */ ; SELECT 2"));
+    }
+
+    @Test
+    void graderRejectsASecondStatementBeforeRunningAnything() throws SQLException {
+        Submission submission = new Submission(-1, -1, "COMMIT; SET statement_timeout = 0; SELECT 1", "SELECT 1");
+        GradingResult result = Grader.score(submission);
+        assertEquals(GradingResult.Outcome.QUERY_ERROR, result.outcome);
+        assertEquals(0, result.score);
+        assertTrue(result.detail.startsWith("Only one SQL statement"));
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.bdsqltester.grading;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+
+/**
+ * A forward-only result set over rows held in memory, with the getters {@link RowBuffer} uses.
+ * Column types are {@link Types} constants; a String in a NUMERIC column stands for 'NaN'::numeric.
+ */
+final class FakeResultSet {
+
+    private FakeResultSet() {
+    }
+
+    static ResultSet of(int[] types, Object[]... rows) {
+        ResultSetMetaData metaData = (ResultSetMetaData) Proxy.newProxyInstance(FakeResultSet.class.getClassLoader(),
+                new Class<?>[]{ResultSetMetaData.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "getColumnCount" -> types.length;
+                    case "getColumnType" -> types[(int) args[0] - 1];
+                    case "getColumnTypeName" -> types[(int) args[0] - 1] == Types.BIT ? "bool" : "test";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+
+        int[] row = {-1};
+        Object[] last = {null};
+        return (ResultSet) Proxy.newProxyInstance(FakeResultSet.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "next":
+                            return ++row[0] < rows.length;
+                        case "getMetaData":
+                            return metaData;
+                        case "wasNull":
+                            return last[0] == null;
+                        case "close":
+                            return null;
+                        default:
+                            break;
+                    }
+                    Object value = rows[row[0]][(int) args[0] - 1];
+                    last[0] = value;
+                    return switch (method.getName()) {
+                        case "getLong" -> value == null ? 0L : ((Number) value).longValue();
+                        case "getDouble" -> value == null ? 0.0 : ((Number) value).doubleValue();
+                        case "getBoolean" -> value != null && (Boolean) value;
+                        case "getTimestamp" -> (Timestamp) value;
+                        case "getBigDecimal" -> {
+                            if (value instanceof String) {
+                                throw new SQLException("Bad value for type BigDecimal : " + value);
+                            }
+                            yield value == null ? null : new BigDecimal(value.toString());
+                        }
+                        case "getString" -> value == null ? null : value.toString();
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    };
+                });
+    }
+}
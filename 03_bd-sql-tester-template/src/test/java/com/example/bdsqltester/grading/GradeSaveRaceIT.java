@@ -0,0 +1,108 @@
+package com.example.bdsqltester.grading;
+
+import com.example.bdsqltester.datasources.MainDataSource;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Two submissions of the same student saved at the same moment must keep the higher grade.
+ * Needs the main database (see {@link MainDataSource}) and fails without it, so it only runs on request:
+ * {@code mvn -Pintegration verify}.
+ */
+class GradeSaveRaceIT {
+
+    private static final int ROUNDS = 25;
+
+    private static long assignmentId;
+    private static long userId;
+
+    @BeforeAll
+    static void createStudent() throws SQLException {
+        try (Connection c = MainDataSource.getConnection()) {
+            assignmentId = queryLong(c, "INSERT INTO assignments (name, answer_key) VALUES ('race test', 'SELECT 1') RETURNING id");
+            userId = queryLong(c, "INSERT INTO users (username, password, role) VALUES ('race-test-' || gen_random_uuid(), '', 'user') RETURNING id");
+        }
+    }
+
+    @AfterAll
+    static void dropStudent() throws SQLException {
+        if (userId == 0) {
+            return;
+        }
+        try (Connection c = MainDataSource.getConnection()) {
+            execute(c, "DELETE FROM grades WHERE user_id = " + userId);
+            execute(c, "DELETE FROM submissions WHERE user_id = " + userId);
+            execute(c, "DELETE FROM users WHERE id = " + userId);
+            execute(c, "DELETE FROM assignments WHERE id = " + assignmentId);
+        }
+    }
+
+    @Test
+    void higherGradeWins() throws Exception {
+        Submission submission = new Submission(assignmentId, userId, "SELECT 1", "SELECT 1");
+        CyclicBarrier start = new CyclicBarrier(2);
+        for (int round = 0; round < ROUNDS; round++) {
+            try (Connection c = MainDataSource.getConnection()) {
+                execute(c, "DELETE FROM grades WHERE user_id = " + userId);
+            }
+            // Both start inserting the grade row at once, so one of them always takes the ON CONFLICT path
+            CompletableFuture<Void> high = save(start, submission, 100);
+            CompletableFuture<Void> low = save(start, submission, 50);
+            high.get();
+            low.get();
+            assertEquals(100, gradeOf(userId), "round " + round);
+        }
+        try (Connection c = MainDataSource.getConnection()) {
+            assertEquals(2L * ROUNDS, queryLong(c, "SELECT count(*) FROM submissions WHERE user_id = " + userId));
+        }
+    }
+
+    private static CompletableFuture<Void> save(CyclicBarrier start, Submission submission, int score) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                start.await();
+                Grader.saveResult(submission, new GradingResult(GradingResult.Outcome.GRADED, score, null));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    private static double gradeOf(long userId) throws SQLException {
+        try (Connection c = MainDataSource.getConnection();
+             PreparedStatement stmt = c.prepareStatement("SELECT grade FROM grades WHERE user_id = ?")) {
+            stmt.setLong(1, userId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                double grade = rs.getDouble(1);
+                assertFalse(rs.next(), "one grade row per student and assignment");
+                return grade;
+            }
+        }
+    }
+
+    private static long queryLong(Connection c, String sql) throws SQLException {
+        try (PreparedStatement stmt = c.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private static void execute(Connection c, String sql) throws SQLException {
+        try (PreparedStatement stmt = c.prepareStatement(sql)) {
+            stmt.executeUpdate();
+        }
+    }
+}
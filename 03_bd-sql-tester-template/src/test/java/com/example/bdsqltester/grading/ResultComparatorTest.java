@@ -0,0 +1,189 @@
+package com.example.bdsqltester.grading;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResultComparatorTest {
+
+    private static final int[] ID_NAME = {Types.INTEGER, Types.VARCHAR};
+
+    private static ResultComparator.Match compare(ResultSet expected, ResultSet actual) throws SQLException {
+        return ResultComparator.compare(expected, actual, ResultBudget.UNLIMITED, 0);
+    }
+
+    @Test
+    void sameRowsInSameOrder() throws SQLException {
+        assertEquals(ResultComparator.Match.ORDERED, compare(
+                FakeResultSet.of(ID_NAME, new Object[]{1, "a"}, new Object[]{2, "b"}),
+                FakeResultSet.of(ID_NAME, new Object[]{1, "a"}, new Object[]{2, "b"})));
+    }
+
+    @Test
+    void sameRowsInOtherOrder() throws SQLException {
+        assertEquals(ResultComparator.Match.UNORDERED, compare(
+                FakeResultSet.of(ID_NAME, new Object[]{1, "a"}, new Object[]{2, "b"}),
+                FakeResultSet.of(ID_NAME, new Object[]{2, "b"}, new Object[]{1, "a"})));
+    }
+
+    @Test
+    void differentRows() throws SQLException {
+        assertEquals(ResultComparator.Match.NONE, compare(
+                FakeResultSet.of(ID_NAME, new Object[]{1, "a"}, new Object[]{2, "b"}),
+                FakeResultSet.of(ID_NAME, new Object[]{1, "a"}, new Object[]{2, "c"})));
+        assertEquals(ResultComparator.Match.NONE, compare(
+                FakeResultSet.of(ID_NAME, new Object[]{1, "a"}, new Object[]{1, "a"}, new Object[]{2, "b"}),
+                FakeResultSet.of(ID_NAME, new Object[]{1, "a"}, new Object[]{2, "b"}, new Object[]{2, "b"})));
+    }
+
+    @Test
+    void differentShapes() throws SQLException {
+        assertEquals(ResultComparator.Match.NONE, compare(
+                FakeResultSet.of(ID_NAME, new Object[]{1, "a"}),
+                FakeResultSet.of(new int[]{Types.INTEGER}, new Object[]{1})));
+        assertEquals(ResultComparator.Match.NONE, compare(
+                FakeResultSet.of(ID_NAME, new Object[]{1, "a"}),
+                FakeResultSet.of(ID_NAME, new Object[]{1, "a"}, new Object[]{1, "a"})));
+    }
+
+    @Test
+    void numbersCompareByValueAcrossTypes() throws SQLException {
+        int[] intType = {Types.BIGINT};
+        int[] floatType = {Types.DOUBLE};
+        int[] decimalType = {Types.NUMERIC};
+        assertEquals(ResultComparator.Match.ORDERED, compare(
+                FakeResultSet.of(intType, new Object[]{1L}, new Object[]{2L}),
+                FakeResultSet.of(decimalType, new Object[]{new BigDecimal("1.00")}, new Object[]{new BigDecimal("2.0")})));
+        assertEquals(ResultComparator.Match.UNORDERED, compare(
+                FakeResultSet.of(floatType, new Object[]{1.0}, new Object[]{2.5}),
+                FakeResultSet.of(decimalType, new Object[]{new BigDecimal("2.50")}, new Object[]{new BigDecimal("1")})));
+        assertEquals(ResultComparator.Match.NONE, compare(
+                FakeResultSet.of(intType, new Object[]{1L}),
+                FakeResultSet.of(floatType, new Object[]{1.5})));
+    }
+
+    @Test
+    void largeNumbersCompareExactlyInAnyOrder() throws SQLException {
+        int[] intType = {Types.BIGINT};
+        int[] floatType = {Types.DOUBLE};
+        long big = (1L << 53) + 1; // (double) big == 2^53
+        assertEquals(ResultComparator.Match.NONE, compare(
+                FakeResultSet.of(intType, new Object[]{big}),
+                FakeResultSet.of(floatType, new Object[]{(double) (1L << 53)})));
+        assertEquals(ResultComparator.Match.UNORDERED, compare(
+                FakeResultSet.of(intType, new Object[]{1L << 60}, new Object[]{1L}),
+                FakeResultSet.of(floatType, new Object[]{1.0}, new Object[]{0x1p60})));
+        assertEquals(ResultComparator.Match.NONE, compare(
+                FakeResultSet.of(intType, new Object[]{big}, new Object[]{1L}),
+                FakeResultSet.of(floatType, new Object[]{1.0}, new Object[]{(double) (1L << 53)})));
+    }
+
+    @Test
+    void floatsCompareByTheirShortestDecimalForm() throws SQLException {
+        int[] floatType = {Types.DOUBLE};
+        int[] decimalType = {Types.NUMERIC};
+        assertEquals(ResultComparator.Match.UNORDERED, compare(
+                FakeResultSet.of(floatType, new Object[]{0.1}, new Object[]{0.7}),
+                FakeResultSet.of(decimalType, new Object[]{new BigDecimal("0.70")}, new Object[]{new BigDecimal("0.1")})));
+        assertEquals(ResultComparator.Match.NONE, compare(
+                FakeResultSet.of(floatType, new Object[]{0.1}),
+                FakeResultSet.of(decimalType, new Object[]{new BigDecimal("0.10000000000000001")})));
+    }
+
+    @Test
+    void numbersNeverEqualText() throws SQLException {
+        assertEquals(ResultComparator.Match.NONE, compare(
+                FakeResultSet.of(new int[]{Types.INTEGER}, new Object[]{1}),
+                FakeResultSet.of(new int[]{Types.VARCHAR}, new Object[]{"1"})));
+    }
+
+    @Test
+    void nullEqualsOnlyNull() throws SQLException {
+        assertEquals(ResultComparator.Match.ORDERED, compare(
+                FakeResultSet.of(ID_NAME, new Object[]{null, null}),
+                FakeResultSet.of(ID_NAME, new Object[]{null, null})));
+        assertEquals(ResultComparator.Match.NONE, compare(
+                FakeResultSet.of(ID_NAME, new Object[]{0, "a"}),
+                FakeResultSet.of(ID_NAME, new Object[]{null, "a"})));
+    }
+
+    @Test
+    void booleansAndTimestamps() throws SQLException {
+        int[] types = {Types.BIT, Types.TIMESTAMP};
+        Timestamp t = Timestamp.valueOf("2024-05-01 12:00:00.123456");
+        assertEquals(ResultComparator.Match.ORDERED, compare(
+                FakeResultSet.of(types, new Object[]{true, t}),
+                FakeResultSet.of(types, new Object[]{true, Timestamp.valueOf("2024-05-01 12:00:00.123456")})));
+        assertEquals(ResultComparator.Match.NONE, compare(
+                FakeResultSet.of(types, new Object[]{true, t}),
+                FakeResultSet.of(types, new Object[]{true, Timestamp.valueOf("2024-05-01 12:00:00.123457")})));
+    }
+
+    @Test
+    void toleranceAcceptsCloseNumbers() throws SQLException {
+        int[] floatType = {Types.DOUBLE};
+        assertEquals(ResultComparator.Match.ORDERED, ResultComparator.compare(
+                FakeResultSet.of(floatType, new Object[]{0.1 + 0.2}),
+                FakeResultSet.of(floatType, new Object[]{0.3}), ResultBudget.UNLIMITED, 1e-9));
+        assertEquals(ResultComparator.Match.NONE, ResultComparator.compare(
+                FakeResultSet.of(floatType, new Object[]{0.1 + 0.2}),
+                FakeResultSet.of(floatType, new Object[]{0.3}), ResultBudget.UNLIMITED, 0));
+    }
+
+    @Test
+    void toleranceOnlyAppliesToRowsInOrder() throws SQLException {
+        int[] floatType = {Types.DOUBLE};
+        assertEquals(ResultComparator.Match.NONE, ResultComparator.compare(
+                FakeResultSet.of(floatType, new Object[]{0.1 + 0.2}, new Object[]{1.0}),
+                FakeResultSet.of(floatType, new Object[]{1.0}, new Object[]{0.3}), ResultBudget.UNLIMITED, 1e-9));
+    }
+
+    @Test
+    void chargesActualRowsToBudget() {
+        ResultLimitExceededException rows = assertThrows(ResultLimitExceededException.class, () ->
+                ResultComparator.compare(
+                        FakeResultSet.of(ID_NAME, new Object[]{1, "a"}, new Object[]{2, "b"}),
+                        FakeResultSet.of(ID_NAME, new Object[]{1, "a"}, new Object[]{2, "b"}),
+                        new ResultBudget(1, Long.MAX_VALUE), 0));
+        assertEquals(ResultLimitExceededException.Limit.ROWS, rows.limit);
+
+        ResultLimitExceededException bytes = assertThrows(ResultLimitExceededException.class, () ->
+                ResultComparator.compare(
+                        FakeResultSet.of(ID_NAME, new Object[]{1, "abc"}),
+                        FakeResultSet.of(ID_NAME, new Object[]{1, "abc"}),
+                        new ResultBudget(10, 10), 0));
+        assertEquals(ResultLimitExceededException.Limit.BYTES, bytes.limit);
+    }
+
+    @Test
+    void comparesAgainstFingerprint() throws SQLException {
+        ResultFingerprint expected = ResultComparator.fingerprint(
+                FakeResultSet.of(ID_NAME, new Object[]{1, "a"}, new Object[]{2, "b"}));
+        assertEquals(ResultComparator.Match.ORDERED, ResultComparator.compare(expected,
+                FakeResultSet.of(ID_NAME, new Object[]{1, "a"}, new Object[]{2, "b"}), ResultBudget.UNLIMITED));
+        assertEquals(ResultComparator.Match.UNORDERED, ResultComparator.compare(expected,
+                FakeResultSet.of(ID_NAME, new Object[]{2, "b"}, new Object[]{1, "a"}), ResultBudget.UNLIMITED));
+        assertEquals(ResultComparator.Match.NONE, ResultComparator.compare(expected,
+                FakeResultSet.of(ID_NAME, new Object[]{1, "a"}, new Object[]{2, "b"}, new Object[]{3, "c"}),
+                ResultBudget.UNLIMITED));
+    }
+
+    @Test
+    void orderedEqualsStopsAtFirstDifference() throws SQLException {
+        assertTrue(ResultComparator.orderedEquals(
+                FakeResultSet.of(ID_NAME, new Object[]{1, "a"}),
+                FakeResultSet.of(ID_NAME, new Object[]{1, "a"})));
+        assertFalse(ResultComparator.orderedEquals(
+                FakeResultSet.of(ID_NAME, new Object[]{1, "a"}, new Object[]{2, "b"}),
+                FakeResultSet.of(ID_NAME, new Object[]{2, "b"}, new Object[]{1, "a"})));
+    }
+}
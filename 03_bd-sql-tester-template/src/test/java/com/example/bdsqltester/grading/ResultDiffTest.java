@@ -0,0 +1,131 @@
+package com.example.bdsqltester.grading;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResultDiffTest {
+
+    private static final int[] ID_NAME = {Types.INTEGER, Types.VARCHAR};
+
+    @Test
+    void listsMissingAndExtraRows() throws SQLException {
+        ResultDiff diff = ResultDiff.diff(
+                FakeResultSet.of(ID_NAME, new Object[]{1, "a"}, new Object[]{2, "b"}, new Object[]{3, "c"}), ResultBudget.UNLIMITED,
+                FakeResultSet.of(ID_NAME, new Object[]{3, "c"}, new Object[]{1, "a"}, new Object[]{4, null}),
+                ResultBudget.UNLIMITED, 5);
+        assertEquals(1, diff.missingCount);
+        assertEquals(1, diff.extraCount);
+        assertEquals(List.of("(2, b)"), diff.missing);
+        assertEquals(List.of("(4, NULL)"), diff.extra);
+        assertEquals("Missing rows: 1\n  (2, b)\n\nRows that should not be there: 1\n  (4, NULL)\n", diff.describe());
+    }
+
+    @Test
+    void sameRowsInOtherOrderIsEmpty() throws SQLException {
+        ResultDiff diff = ResultDiff.diff(
+                FakeResultSet.of(new int[]{Types.BIGINT}, new Object[]{1L}, new Object[]{2L}), ResultBudget.UNLIMITED,
+                FakeResultSet.of(new int[]{Types.NUMERIC}, new Object[]{new BigDecimal("2.00")}, new Object[]{new BigDecimal("1")}),
+                ResultBudget.UNLIMITED, 5);
+        assertTrue(diff.isEmpty());
+    }
+
+    @Test
+    void keysAgreeWithComparison() throws SQLException {
+        ResultDiff diff = ResultDiff.diff(
+                FakeResultSet.of(new int[]{Types.BIGINT}, new Object[]{(1L << 53) + 1}, new Object[]{1L << 60}), ResultBudget.UNLIMITED,
+                FakeResultSet.of(new int[]{Types.DOUBLE}, new Object[]{0x1p60}, new Object[]{0x1p53}),
+                ResultBudget.UNLIMITED, 5);
+        assertEquals(List.of("(9007199254740993)"), diff.missing);
+        assertEquals(List.of("(9.007199254740992E15)"), diff.extra);
+        assertTrue(ResultDiff.diff(
+                FakeResultSet.of(new int[]{Types.DOUBLE}, new Object[]{0.1}), ResultBudget.UNLIMITED,
+                FakeResultSet.of(new int[]{Types.NUMERIC}, new Object[]{new BigDecimal("0.10")}),
+                ResultBudget.UNLIMITED, 5).isEmpty());
+    }
+
+    @Test
+    void duplicatesCount() throws SQLException {
+        ResultDiff diff = ResultDiff.diff(
+                FakeResultSet.of(ID_NAME, new Object[]{1, "a"}, new Object[]{1, "a"}), ResultBudget.UNLIMITED,
+                FakeResultSet.of(ID_NAME, new Object[]{1, "a"}),
+                ResultBudget.UNLIMITED, 5);
+        assertEquals(1, diff.missingCount);
+        assertEquals(0, diff.extraCount);
+    }
+
+    @Test
+    void differentColumnCounts() throws SQLException {
+        ResultDiff diff = ResultDiff.diff(
+                FakeResultSet.of(ID_NAME, new Object[]{1, "a"}), ResultBudget.UNLIMITED,
+                FakeResultSet.of(new int[]{Types.INTEGER}, new Object[]{1}),
+                ResultBudget.UNLIMITED, 5);
+        assertEquals("Expected 2 columns, your result has 1.", diff.describe());
+    }
+
+    @Test
+    void keepsOnlyTheFirstRowsButCountsAll() throws SQLException {
+        Object[][] rows = new Object[20][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new Object[]{i, "x"};
+        }
+        ResultDiff diff = ResultDiff.diff(FakeResultSet.of(ID_NAME), ResultBudget.UNLIMITED,
+                FakeResultSet.of(ID_NAME, rows), ResultBudget.UNLIMITED, 3);
+        assertEquals(20, diff.extraCount);
+        assertEquals(3, diff.extra.size());
+        assertTrue(diff.describe().startsWith("Rows that should not be there: 20, the first 3\n"));
+    }
+
+    @Test
+    void chargesTheExpectedSideToItsBudget() {
+        assertThrows(ResultLimitExceededException.class, () -> ResultDiff.diff(
+                FakeResultSet.of(ID_NAME, new Object[]{1, "a"}, new Object[]{2, "b"}), new ResultBudget(1, Long.MAX_VALUE),
+                FakeResultSet.of(ID_NAME, new Object[]{1, "a"}), ResultBudget.UNLIMITED, 5));
+    }
+
+    @Test
+    void diffsAgainstRecordedRows() throws SQLException {
+        ResultDiff.Recorder recorder = new ResultDiff.Recorder(2, ResultDiff.MEMORY_BYTES);
+        ResultComparator.fingerprint(
+                FakeResultSet.of(ID_NAME, new Object[]{2, "b"}, new Object[]{1, "a"}, new Object[]{3, "c"}), recorder);
+        ResultDiff diff = ResultDiff.diff(recorder.sorted(),
+                FakeResultSet.of(ID_NAME, new Object[]{3, "c"}, new Object[]{1, "a"}, new Object[]{4, null}),
+                ResultBudget.UNLIMITED, 5);
+        assertEquals(List.of("(2, b)"), diff.missing);
+        assertEquals(List.of("(4, NULL)"), diff.extra);
+    }
+
+    @Test
+    void recordsNothingThatDoesNotFit() throws SQLException {
+        ResultDiff.Recorder recorder = new ResultDiff.Recorder(2, 200);
+        ResultComparator.fingerprint(FakeResultSet.of(ID_NAME, new Object[]{1, "a"}), recorder);
+        assertNotNull(recorder.sorted());
+        ResultComparator.fingerprint(FakeResultSet.of(ID_NAME, new Object[]{2, "b"}, new Object[]{3, "c"}), recorder);
+        assertNull(recorder.sorted());
+    }
+
+    @Test
+    void spillsLargeResultsToDisk() throws SQLException {
+        // Enough rows to go over the default 8 MB of memory per side several times
+        int count = 200_000;
+        Object[][] expected = new Object[count][];
+        Object[][] actual = new Object[count][];
+        for (int i = 0; i < count; i++) {
+            expected[i] = new Object[]{i, "row number " + i};
+            actual[count - 1 - i] = new Object[]{i == 7 ? -7 : i, "row number " + i};
+        }
+        ResultDiff diff = ResultDiff.diff(FakeResultSet.of(ID_NAME, expected), ResultBudget.UNLIMITED,
+                FakeResultSet.of(ID_NAME, actual), ResultBudget.UNLIMITED, 5);
+        assertEquals(List.of("(7, row number 7)"), diff.missing);
+        assertEquals(List.of("(-7, row number 7)"), diff.extra);
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.bdsqltester.grading;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ResultFingerprintTest {
+
+    private static ResultFingerprint of(long... rowHashes) {
+        ResultFingerprint.Builder builder = new ResultFingerprint.Builder(1);
+        for (long h : rowHashes) {
+            builder.addRow(h, ~h);
+        }
+        return builder.build();
+    }
+
+    @Test
+    void sameRowsInAnyOrder() {
+        ResultFingerprint a = of(1, 2, 3);
+        ResultFingerprint b = of(3, 1, 2);
+        assertTrue(a.sameRowsAs(b));
+        assertFalse(a.sameOrderAs(b));
+        assertTrue(a.sameOrderAs(of(1, 2, 3)));
+    }
+
+    @Test
+    void countsDuplicates() {
+        assertFalse(of(1, 1, 2).sameRowsAs(of(1, 2, 2)));
+        assertFalse(of(1, 2).sameRowsAs(of(1, 2, 2)));
+    }
+
+    @Test
+    void similarRowsDoNotCancelOut() {
+        // Without mixing, 1 + 4 and 2 + 3 would give the same sum
+        assertFalse(of(1, 4).sameRowsAs(of(2, 3)));
+    }
+
+    @Test
+    void emptyResults() {
+        assertTrue(of().sameOrderAs(of()));
+        assertFalse(of().sameRowsAs(new ResultFingerprint.Builder(2).build()));
+    }
+}
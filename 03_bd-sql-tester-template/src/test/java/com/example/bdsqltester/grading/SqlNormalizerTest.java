@@ -0,0 +1,89 @@
+package com.example.bdsqltester.grading;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SqlNormalizerTest {
+
+    private static void assertSame(String a, String b) {
+        assertEquals(SqlNormalizer.normalize(a), SqlNormalizer.normalize(b));
+    }
+
+    private static void assertDifferent(String a, String b) {
+        assertNotEquals(SqlNormalizer.normalize(a), SqlNormalizer.normalize(b));
+    }
+
+    @Test
+    void ignoresLayoutCaseCommentsAndTrailingSemicolon() {
+        assertSame("SELECT name FROM employees;",
+                "select   name\n  from Employees -- all of them\n /* even /* nested */ comments */");
+    }
+
+    @Test
+    void dropsOptionalAs() {
+        assertSame("SELECT e.name AS n FROM employees AS e", "SELECT e.name n FROM employees e");
+    }
+
+    @Test
+    void sortsAndedConditions() {
+        assertSame("SELECT * FROM t WHERE a = 1 AND b = 2", "SELECT * FROM t WHERE b = 2 AND a = 1");
+        assertSame("SELECT * FROM t JOIN u ON t.id = u.id AND u.x > 0 WHERE t.y < 3",
+                "SELECT * FROM t JOIN u ON u.x > 0 AND t.id = u.id WHERE t.y < 3");
+    }
+
+    @Test
+    void keepsBetweenTogether() {
+        assertEquals("select * from t where a between 1 and 2 and b = 3",
+                SqlNormalizer.normalize("SELECT * FROM t WHERE b = 3 AND a BETWEEN 1 AND 2"));
+    }
+
+    @Test
+    void doesNotReorderAcrossOr() {
+        assertDifferent("SELECT * FROM t WHERE a = 1 AND b = 2 OR c = 3", "SELECT * FROM t WHERE b = 2 OR c = 3 AND a = 1");
+    }
+
+    @Test
+    void keepsStringLiteralsAsWritten() {
+        assertDifferent("SELECT * FROM t WHERE name = 'Ann'", "SELECT * FROM t WHERE name = 'ann'");
+        assertEquals("select 'it''s  -- not a comment'", SqlNormalizer.normalize("SELECT 'it''s  -- not a comment'"));
+    }
+
+    @Test
+    void keepsQuotedIdentifiersAsWritten() {
+        assertSame("SELECT \"Name\" FROM employees", "select   \"Name\"\nfrom employees");
+        assertDifferent("SELECT \"Name\" FROM employees", "SELECT name FROM employees");
+        assertDifferent("SELECT * FROM a \"left\" JOIN b ON a.id = b.id", "SELECT * FROM a LEFT JOIN b ON a.id = b.id");
+        assertDifferent("SELECT * FROM t ORDER BY a \"desc\"", "SELECT * FROM t ORDER BY a desc");
+        assertDifferent("SELECT * FROM t WHERE a = 1 \"and\" b = 2", "SELECT * FROM t WHERE b = 2 AND a = 1");
+    }
+
+    @Test
+    void leavesFunctionNamedLikeAClauseAlone() {
+        assertSame("SELECT * FROM t WHERE left(name, 1) = 'A' AND id > 3",
+                "SELECT * FROM t WHERE id > 3 AND left(name, 1) = 'A'");
+    }
+
+    @Test
+    void splitsSignFromOperator() {
+        assertEquals("select * from t where a = - 1", SqlNormalizer.normalize("SELECT * FROM t WHERE a=-1"));
+    }
+
+    @Test
+    void cachesAnswerKeyUntilItChanges() {
+        assertEquals("select 1", SqlNormalizer.normalizedAnswerKey(-1, "SELECT 1"));
+        assertEquals("select 2", SqlNormalizer.normalizedAnswerKey(-1, "SELECT 2"));
+    }
+
+    @Test
+    void matchesAnswerKeyOnlyOnceItRan() {
+        assertNull(SqlNormalizer.runnableAnswerKey(-2, "SELECT 1"));
+        SqlNormalizer.answerKeyRan(-2, "SELECT 1", true);
+        assertEquals("select 1", SqlNormalizer.runnableAnswerKey(-2, "SELECT 1"));
+        assertNull(SqlNormalizer.runnableAnswerKey(-2, "SELECT 2"));
+        SqlNormalizer.answerKeyRan(-2, "SELECT 2", false);
+        assertNull(SqlNormalizer.runnableAnswerKey(-2, "SELECT 2"));
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.bdsqltester.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LatencyHistogramTest {
+
+    private static final long MS = 1_000_000;
+
+    @Test
+    void emptyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram("empty");
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMeanMillis());
+        assertEquals(0, histogram.getP99Millis());
+    }
+
+    @Test
+    void bucketUpperBoundsAreInclusive() {
+        LatencyHistogram histogram = new LatencyHistogram("bounds");
+        histogram.recordNanos(MS);          // 1 ms: first bucket
+        histogram.recordNanos(MS + 1);      // just over: second bucket
+        histogram.recordNanos(120_000 * MS); // slower than the last bound
+        long[] counts = histogram.snapshot();
+        assertEquals(1, counts[0]);
+        assertEquals(1, counts[1]);
+        assertEquals(1, counts[counts.length - 1]);
+    }
+
+    @Test
+    void percentilesReportTheirBucketsUpperBound() {
+        LatencyHistogram histogram = new LatencyHistogram("percentiles");
+        for (int i = 0; i < 90; i++) {
+            histogram.recordNanos(3 * MS);
+        }
+        for (int i = 0; i < 9; i++) {
+            histogram.recordNanos(40 * MS);
+        }
+        histogram.recordNanos(700 * MS);
+        assertEquals(5, histogram.getP50Millis());
+        assertEquals(50, histogram.getP95Millis());
+        assertEquals(50, histogram.getP99Millis());
+        assertEquals(1000, histogram.percentileMillis(1.0));
+        assertEquals(100, histogram.getCount());
+        assertEquals((90 * 3 + 9 * 40 + 700) / 100.0, histogram.getMeanMillis(), 1e-9);
+    }
+
+    @Test
+    void slowestBucketIsUnbounded() {
+        LatencyHistogram histogram = new LatencyHistogram("slow");
+        histogram.recordNanos(61_000 * MS);
+        assertEquals(Double.POSITIVE_INFINITY, histogram.getP50Millis());
+        assertEquals(61, histogram.getSumSeconds(), 1e-9);
+    }
+}